@@ -6,15 +6,24 @@ import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
 
+import ch.uzh.ifi.hase.soprafs24.handler.TokenHandshakeInterceptor;
 import ch.uzh.ifi.hase.soprafs24.handler.WebSocketHandler;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
 
 @Configuration
 @EnableWebSocket
 public class WebSocketConfig implements WebSocketConfigurer {
 
+    private final UserRepository userRepository;
+
+    public WebSocketConfig(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
         registry.addHandler(webSocketHandler(), "/ws")
+                .addInterceptors(new TokenHandshakeInterceptor(userRepository)) // Token einmal beim Handshake pruefen
                 .setAllowedOrigins("*"); // For development - restrict in production
     }
 
@@ -0,0 +1,12 @@
+package ch.uzh.ifi.hase.soprafs24.constant;
+
+/**
+ * Last turn a bot took, used to alternate between left and right turns.
+ */
+public enum Curve {
+    LEFTCURVE, RIGHTCURVE;
+
+    public Curve opposite() {
+        return this == LEFTCURVE ? RIGHTCURVE : LEFTCURVE;
+    }
+}
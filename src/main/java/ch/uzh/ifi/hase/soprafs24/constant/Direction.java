@@ -0,0 +1,59 @@
+package ch.uzh.ifi.hase.soprafs24.constant;
+
+/**
+ * Movement direction of a snake. The constants are ordered clockwise, so the opposite
+ * direction and both turns are plain table lookups. Strings from the client are parsed
+ * once via {@link #parse(String)}; the game loop only works with the enum.
+ */
+public enum Direction {
+    UP(0, -1), RIGHT(1, 0), DOWN(0, 1), LEFT(-1, 0);
+
+    private static final Direction[] OPPOSITE = new Direction[4];
+    private static final Direction[] LEFT_TURN = new Direction[4];
+    private static final Direction[] RIGHT_TURN = new Direction[4];
+
+    static {
+        Direction[] values = values();
+        for (Direction direction : values) {
+            int i = direction.ordinal();
+            OPPOSITE[i] = values[(i + 2) % 4];
+            LEFT_TURN[i] = values[(i + 3) % 4];
+            RIGHT_TURN[i] = values[(i + 1) % 4];
+        }
+    }
+
+    private final int dx;
+    private final int dy;
+
+    Direction(int dx, int dy) {
+        this.dx = dx;
+        this.dy = dy;
+    }
+
+    public int getDx() {return dx;}
+    public int getDy() {return dy;}
+
+    public Direction opposite() {return OPPOSITE[ordinal()];}
+    public Direction turnLeft() {return LEFT_TURN[ordinal()];}
+    public Direction turnRight() {return RIGHT_TURN[ordinal()];}
+
+    public Direction turn(Curve curve) {
+        return curve == Curve.LEFTCURVE ? turnLeft() : turnRight();
+    }
+
+    /**
+     * @return the direction named by the string ("UP", "DOWN", "LEFT", "RIGHT"), null for anything else
+     */
+    public static Direction parse(String value) {
+        if (value == null) {
+            return null;
+        }
+        switch (value) {
+            case "UP": return UP;
+            case "DOWN": return DOWN;
+            case "LEFT": return LEFT;
+            case "RIGHT": return RIGHT;
+            default: return null;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package ch.uzh.ifi.hase.soprafs24.constant;
+
+/**
+ * Kind of an item on the board. Carries everything the game loop needs to dispatch on an item
+ * without string comparisons or instanceof chains: how many cells it covers, whether it is picked
+ * up as a cookie or as a powerup, whether bots avoid it and under which key it is broadcast.
+ * The constants are in broadcast order.
+ */
+public enum ItemKind {
+    COOKIE(1, false, false, "cookies"),
+    GOLDEN_COOKIE(1, true, false, "goldenCookies"),
+    REVERSE_CONTROL(2, true, true, "reverseControls"),
+    DIVIDER(2, true, true, "dividers"),
+    MULTIPLIER(1, true, false, "multipliers");
+
+    public static final int COUNT = values().length;
+
+    private final int footprint;
+    private final boolean powerup;
+    private final boolean powerDown;
+    private final String stateKey;
+
+    ItemKind(int footprint, boolean powerup, boolean powerDown, String stateKey) {
+        this.footprint = footprint;
+        this.powerup = powerup;
+        this.powerDown = powerDown;
+        this.stateKey = stateKey;
+    }
+
+    /**
+     * @return edge length of the square area the item covers, anchored at its position
+     */
+    public int getFootprint() {return footprint;}
+
+    /**
+     * @return true if the item is picked up by the powerup collision, false for plain cookies
+     */
+    public boolean isPowerup() {return powerup;}
+
+    /**
+     * @return true for items with a negative effect (bots steer around them)
+     */
+    public boolean isPowerDown() {return powerDown;}
+
+    /**
+     * @return key of the position list in the gameState message
+     */
+    public String getStateKey() {return stateKey;}
+}
@@ -0,0 +1,93 @@
+package ch.uzh.ifi.hase.soprafs24.controller;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.LeaderboardDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
+import ch.uzh.ifi.hase.soprafs24.service.LeaderboardIndex;
+import ch.uzh.ifi.hase.soprafs24.service.UserService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serialized global leaderboard for {@code GET /leaderboard}. The JSON body is built once per
+ * {@link UserService#getLeaderboardVersion()}; its ETag is derived from the body.
+ */
+@Component
+public class LeaderboardCache {
+
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+    private volatile Snapshot snapshot;
+
+    public LeaderboardCache(UserService userService, ObjectMapper objectMapper) {
+        this.userService = userService;
+        this.objectMapper = objectMapper;
+    }
+
+    public Snapshot get() throws JsonProcessingException {
+        long version = userService.getLeaderboardVersion();
+        Snapshot current = snapshot;
+        if (current != null && current.version == version) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (current == null || current.version != version) {
+                current = build(version);
+                snapshot = current;
+            }
+            return current;
+        }
+    }
+
+    private Snapshot build(long version) throws JsonProcessingException {
+        List<User> topPlayers = userService.getTopPlayersByLevel(LeaderboardIndex.TOP_SIZE);
+        List<LeaderboardDTO> leaderboardDTOs = new ArrayList<>(topPlayers.size());
+        for (User user : topPlayers) {
+            leaderboardDTOs.add(DTOMapper.INSTANCE.convertEntityToLeaderboardDTO(user));
+        }
+        byte[] body = objectMapper.writeValueAsBytes(leaderboardDTOs);
+        return new Snapshot(version, "\"" + DigestUtils.md5DigestAsHex(body) + "\"", body);
+    }
+
+    public static final class Snapshot {
+        private final long version;
+        private final String eTag;
+        private final byte[] body;
+
+        private Snapshot(long version, String eTag, byte[] body) {
+            this.version = version;
+            this.eTag = eTag;
+            this.body = body;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * True if the {@code If-None-Match} header of the request names this version of the list.
+         */
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String tag : ifNoneMatch.split(",")) {
+                String trimmed = tag.trim();
+                if (trimmed.equals("*") || trimmed.equals(eTag) || trimmed.equals("W/" + eTag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
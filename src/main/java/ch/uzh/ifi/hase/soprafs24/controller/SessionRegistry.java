@@ -1,39 +1,63 @@
 package ch.uzh.ifi.hase.soprafs24.controller;
 
 import org.springframework.web.socket.WebSocketSession;
-import java.util.Collections;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Connected WebSocket sessions, indexed by user and by session id.
+ * Register, lookup and unregister of a user session are constant time, a closing session does
+ * not have to be searched among all connected users.
+ */
 public class SessionRegistry {
 
-    // Map lobbyId -> set of active sessions
-    private final Map<Long, Set<WebSocketSession>> lobbySessions = new ConcurrentHashMap<>();
-
-    public void addSession(long lobbyId, WebSocketSession session) {
-        lobbySessions.computeIfAbsent(lobbyId, key ->
-            Collections.newSetFromMap(new ConcurrentHashMap<>())
-        ).add(session);
-
-        // Debug: Print the state of the lobbySessions map after adding a session
-        System.out.println("Session added. Current lobbySessions state: " + lobbySessions);
+    // Map userId -> session of the user (the newest one on reconnect)
+    private final Map<Long, WebSocketSession> userSessions = new ConcurrentHashMap<>();
+
+    // Map sessionId -> userId, reverse index of userSessions
+    private final Map<String, Long> sessionOwners = new ConcurrentHashMap<>();
+
+    /**
+     * Registers the session of a user. A previous session of the same user loses its owner, so
+     * closing it later does not affect the new one.
+     */
+    public void register(Long userId, WebSocketSession session) {
+        sessionOwners.put(session.getId(), userId);
+        WebSocketSession previous = userSessions.put(userId, session);
+        if (previous != null && !previous.getId().equals(session.getId())) {
+            sessionOwners.remove(previous.getId(), userId);
+        }
     }
 
-    public void removeSession(Long lobbyId, WebSocketSession session) {
-        Set<WebSocketSession> sessions = lobbySessions.get(lobbyId);
-        if (sessions != null) {
-            sessions.remove(session);
-            if (sessions.isEmpty()) {
-                lobbySessions.remove(lobbyId);
-            }
+    /**
+     * Removes the session, matched by its id so that decorated sessions are found as well.
+     *
+     * @return the user that owned the session, null if it was not registered (anymore)
+     */
+    public Long unregister(WebSocketSession session) {
+        String sessionId = session.getId();
+        Long userId = sessionOwners.remove(sessionId);
+        if (userId != null) {
+            userSessions.computeIfPresent(userId, (id, current) -> current.getId().equals(sessionId) ? null : current);
         }
+        return userId;
+    }
+
+    public WebSocketSession getUserSession(Long userId) {
+        return userSessions.get(userId);
+    }
 
-        // Debug: Print the state of the lobbySessions map after removing a session
-        System.out.println("Session removed. Current lobbySessions state: " + lobbySessions);
+    /**
+     * @return the user that owns the session, null if it is not registered
+     */
+    public Long getUserId(String sessionId) {
+        return sessionId == null ? null : sessionOwners.get(sessionId);
     }
 
-    public Set<WebSocketSession> getSessions(Long lobbyId) {
-        return lobbySessions.getOrDefault(lobbyId, Collections.emptySet());
+    /**
+     * @return the live map userId -> session
+     */
+    public Map<Long, WebSocketSession> getUserSessions() {
+        return userSessions;
     }
-}
\ No newline at end of file
+}
@@ -1,12 +1,16 @@
 package ch.uzh.ifi.hase.soprafs24.controller;
 
 import ch.uzh.ifi.hase.soprafs24.entity.User;
-import ch.uzh.ifi.hase.soprafs24.rest.dto.LeaderboardDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.UserGetDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.UserPostDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
 import ch.uzh.ifi.hase.soprafs24.service.UserService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -25,9 +29,11 @@ import java.util.Map;
 public class UserController {
 
   private final UserService userService;
+  private final LeaderboardCache leaderboardCache;
 
-  UserController(UserService userService) {
+  UserController(UserService userService, LeaderboardCache leaderboardCache) {
     this.userService = userService;
+    this.leaderboardCache = leaderboardCache;
   }
 
   @GetMapping("/users")
@@ -56,18 +62,24 @@ public class UserController {
     return DTOMapper.INSTANCE.convertEntityToUserGetDTO(user);
   }
     @GetMapping("/leaderboard") // Abrufen der aktuellen globalen Bestenliste
-    @ResponseStatus(HttpStatus.OK)
-    @ResponseBody
-    public List<LeaderboardDTO> getLeaderboard() {
-        // Die Top 10 Spieler nach Level abrufen
-        List<User> topPlayers = userService.getTopPlayersByLevel(10);
-        List<LeaderboardDTO> leaderboardDTOs = new ArrayList<>();
-
-        // Jeden Benutzer in die speziell für die Bestenliste optimierte API-Repräsentation umwandeln
-        for (User user : topPlayers) {
-            leaderboardDTOs.add(DTOMapper.INSTANCE.convertEntityToLeaderboardDTO(user));
+    public ResponseEntity<byte[]> getLeaderboard(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
+            throws JsonProcessingException {
+        // Die Top 10 Spieler, fertig serialisiert bis sich die Bestenliste ändert
+        LeaderboardCache.Snapshot leaderboard = leaderboardCache.get();
+
+        // Pollende Clients mit aktueller Liste bekommen nur 304 zurück
+        if (leaderboard.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(leaderboard.getETag())
+                    .cacheControl(CacheControl.noCache())
+                    .build();
         }
-        return leaderboardDTOs;
+        return ResponseEntity.ok()
+                .eTag(leaderboard.getETag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(leaderboard.getBody());
     }
     @GetMapping("/leaderboard/{id}") // Abrufen des Leaderboard-Rangs eines bestimmten Spielers
     @ResponseStatus(HttpStatus.OK)
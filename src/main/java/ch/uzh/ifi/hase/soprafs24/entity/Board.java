@@ -0,0 +1,321 @@
+package ch.uzh.ifi.hase.soprafs24.entity;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Occupancy grid of the 30x25 playing field of one game.
+ * Each cell is addressed by its packed index y * WIDTH + x and stores how many snake segments
+ * and how many items cover it, plus the item lying on it. 2x2 items are registered on all four
+ * cells. The grid is kept up to date incrementally by {@link Game} and {@link Snake}, so every
+ * free/occupied query and every pickup lookup is a single array read.
+ * <p>
+ * In addition the board keeps a pool of all free cells (dense array plus position index, removal
+ * by swapping with the last entry), so a uniformly random free cell can be drawn in constant time.
+ * A second pool holds every free 2x2 block, addressed by its upper left cell (the anchor). Each anchor
+ * counts how many of its four cells are occupied; only a change of a cell's free state touches the
+ * at most four anchors covering it.
+ */
+public class Board {
+
+    public static final int WIDTH = 30;
+    public static final int HEIGHT = 25;
+    public static final int CELLS = WIDTH * HEIGHT;
+
+    private final byte[] snakeCells = new byte[CELLS];
+    private final byte[] itemCells = new byte[CELLS];
+    private final Item[] itemAt = new Item[CELLS];
+    private final IndexPool freeCells = new IndexPool();
+    private final IndexPool freeBlocks = new IndexPool();
+    // Anzahl belegter Zellen im 2x2 Block mit dieser linken oberen Ecke
+    private final byte[] blockedInBlock = new byte[CELLS];
+
+    public Board() {
+        resetFreeCells();
+    }
+
+    public static boolean inBounds(int x, int y) {
+        return x >= 0 && x < WIDTH && y >= 0 && y < HEIGHT;
+    }
+
+    public static int index(int x, int y) {
+        return y * WIDTH + x;
+    }
+
+    public static int cellX(int index) {
+        return index % WIDTH;
+    }
+
+    public static int cellY(int index) {
+        return index / WIDTH;
+    }
+
+    /**
+     * @return true if the cell lies on the field and is covered by neither a snake nor an item
+     */
+    public boolean isFree(int x, int y) {
+        if (!inBounds(x, y)) {
+            return false;
+        }
+        int index = index(x, y);
+        return snakeCells[index] == 0 && itemCells[index] == 0;
+    }
+
+    public boolean isFree(int index) {
+        return snakeCells[index] == 0 && itemCells[index] == 0;
+    }
+
+    /**
+     * @return number of cells covered by neither a snake nor an item
+     */
+    public int freeCellCount() {
+        return freeCells.size;
+    }
+
+    /**
+     * Draws a uniformly distributed free cell.
+     *
+     * @return the index of the cell, or -1 if the board is full
+     */
+    public int randomFreeCell(Random random) {
+        return freeCells.random(random);
+    }
+
+    /**
+     * @return number of free 2x2 blocks, overlapping blocks counted separately
+     */
+    public int freeBlockCount() {
+        return freeBlocks.size;
+    }
+
+    /**
+     * Draws a uniformly distributed free 2x2 block.
+     *
+     * @return the index of its upper left cell, or -1 if no 2x2 block is free
+     */
+    public int randomFreeBlock(Random random) {
+        return freeBlocks.random(random);
+    }
+
+    public boolean hasSnake(int x, int y) {
+        return inBounds(x, y) && snakeCells[index(x, y)] > 0;
+    }
+
+    /**
+     * @return number of snake segments on the cell, 0 for cells outside the field
+     */
+    public int snakeCount(int x, int y) {
+        return inBounds(x, y) ? snakeCells[index(x, y)] : 0;
+    }
+
+    public boolean hasItem(int x, int y) {
+        return inBounds(x, y) && itemCells[index(x, y)] > 0;
+    }
+
+    /**
+     * @return the item covering the cell, null if there is none or the cell is outside the field
+     */
+    public Item itemAt(int x, int y) {
+        return inBounds(x, y) ? itemAt[index(x, y)] : null;
+    }
+
+    // Segmente ausserhalb des Spielfelds (Kopf in der Wand) werden nicht erfasst
+    public void occupySnake(int x, int y) {
+        if (inBounds(x, y)) {
+            int index = index(x, y);
+            snakeCells[index]++;
+            if (snakeCells[index] == 1 && itemCells[index] == 0) {
+                removeFree(index);
+            }
+        }
+    }
+
+    public void releaseSnake(int x, int y) {
+        if (inBounds(x, y)) {
+            int index = index(x, y);
+            snakeCells[index]--;
+            if (snakeCells[index] == 0 && itemCells[index] == 0) {
+                addFree(index);
+            }
+        }
+    }
+
+    public void occupySnake(int[][] coordinates) {
+        for (int[] coordinate : coordinates) {
+            occupySnake(coordinate[0], coordinate[1]);
+        }
+    }
+
+    public void releaseSnake(int[][] coordinates) {
+        for (int[] coordinate : coordinates) {
+            releaseSnake(coordinate[0], coordinate[1]);
+        }
+    }
+
+    public void occupyItem(Item item) {
+        int[] position = item.getPosition();
+        int size = item.getFootprint();
+        for (int dx = 0; dx < size; dx++) {
+            for (int dy = 0; dy < size; dy++) {
+                int x = position[0] + dx;
+                int y = position[1] + dy;
+                if (inBounds(x, y)) {
+                    int index = index(x, y);
+                    itemCells[index]++;
+                    if (itemCells[index] == 1 && snakeCells[index] == 0) {
+                        removeFree(index);
+                    }
+                    if (itemAt[index] == null) {
+                        itemAt[index] = item;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the item from all cells it covers.
+     *
+     * @return true if one of these cells is still covered by another, overlapping item that is
+     * not indexed yet (see {@link #indexItem(Item)})
+     */
+    public boolean releaseItem(Item item) {
+        boolean orphaned = false;
+        int[] position = item.getPosition();
+        int size = item.getFootprint();
+        for (int dx = 0; dx < size; dx++) {
+            for (int dy = 0; dy < size; dy++) {
+                int x = position[0] + dx;
+                int y = position[1] + dy;
+                if (inBounds(x, y)) {
+                    int index = index(x, y);
+                    itemCells[index]--;
+                    if (itemCells[index] == 0 && snakeCells[index] == 0) {
+                        addFree(index);
+                    }
+                    if (itemAt[index] == item) {
+                        itemAt[index] = null;
+                        orphaned |= itemCells[index] > 0;
+                    }
+                }
+            }
+        }
+        return orphaned;
+    }
+
+    /**
+     * Points every cell of the item that has no indexed item yet to this item again,
+     * without touching the counters.
+     */
+    public void indexItem(Item item) {
+        int[] position = item.getPosition();
+        int size = item.getFootprint();
+        for (int dx = 0; dx < size; dx++) {
+            for (int dy = 0; dy < size; dy++) {
+                int x = position[0] + dx;
+                int y = position[1] + dy;
+                if (inBounds(x, y) && itemAt[index(x, y)] == null) {
+                    itemAt[index(x, y)] = item;
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(snakeCells, (byte) 0);
+        Arrays.fill(itemCells, (byte) 0);
+        Arrays.fill(itemAt, null);
+        resetFreeCells();
+    }
+
+    private void resetFreeCells() {
+        freeCells.clear();
+        freeBlocks.clear();
+        Arrays.fill(blockedInBlock, (byte) 0);
+        for (int i = 0; i < CELLS; i++) {
+            freeCells.add(i);
+            if (isBlockAnchor(i)) {
+                freeBlocks.add(i);
+            }
+        }
+    }
+
+    private static boolean isBlockAnchor(int index) {
+        return cellX(index) < WIDTH - 1 && cellY(index) < HEIGHT - 1;
+    }
+
+    private void addFree(int index) {
+        freeCells.add(index);
+        updateBlocks(index, -1);
+    }
+
+    private void removeFree(int index) {
+        freeCells.remove(index);
+        updateBlocks(index, 1);
+    }
+
+    // passt die (hoechstens vier) Bloecke an, die diese Zelle enthalten
+    private void updateBlocks(int index, int delta) {
+        int x = cellX(index);
+        int y = cellY(index);
+        for (int ax = x - 1; ax <= x; ax++) {
+            for (int ay = y - 1; ay <= y; ay++) {
+                if (ax < 0 || ay < 0 || ax >= WIDTH - 1 || ay >= HEIGHT - 1) {
+                    continue;
+                }
+                int anchor = index(ax, ay);
+                blockedInBlock[anchor] += delta;
+                if (blockedInBlock[anchor] == 0) {
+                    freeBlocks.add(anchor);
+                } else if (delta > 0 && blockedInBlock[anchor] == 1) {
+                    freeBlocks.remove(anchor);
+                }
+            }
+        }
+    }
+
+    /**
+     * Set of cell indices with O(1) add, remove and uniform sampling: the members are stored densely
+     * in {@code members[0..size)}, {@code position[cell]} is their slot (-1 if absent). A removed
+     * member is replaced by the last one.
+     */
+    private static final class IndexPool {
+        private final int[] members = new int[CELLS];
+        private final int[] position = new int[CELLS];
+        private int size;
+
+        private IndexPool() {
+            clear();
+        }
+
+        private void add(int index) {
+            if (position[index] >= 0) {
+                return;
+            }
+            members[size] = index;
+            position[index] = size;
+            size++;
+        }
+
+        private void remove(int index) {
+            int slot = position[index];
+            if (slot < 0) {
+                return;
+            }
+            size--;
+            int last = members[size];
+            members[slot] = last;
+            position[last] = slot;
+            position[index] = -1;
+        }
+
+        private int random(Random random) {
+            return size == 0 ? -1 : members[random.nextInt(size)];
+        }
+
+        private void clear() {
+            Arrays.fill(position, -1);
+            size = 0;
+        }
+    }
+}
@@ -1,19 +1,27 @@
 package ch.uzh.ifi.hase.soprafs24.entity;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class Game {
 
+    public static final long TICK_MILLIS = 200;
+    public static final int DURATION_SECONDS = 180;
+    public static final long DURATION_TICKS = DURATION_SECONDS * 1000L / TICK_MILLIS;
+
     private long gameId;
     private static long idCounter = 0; // only to generate unique id
     private Lobby lobby;
-    private List<Snake> snakes;
-    private List<Item> items;
-    private float timestamp;
+    private List<PlayerProfile> players = Collections.emptyList(); // Profil-Tabelle, einmal bei createGame geladen
+    private final List<Snake> snakes;
+    private final List<Item> items;
+    private final Board board = new Board(); // Belegung des Spielfelds, wird inkrementell nachgeführt
+    private long tick; // Anzahl gespielter Ticks, die Restzeit wird daraus abgeleitet
     private boolean gameOver;
     private String winner;
-    private List<String> leaderboard;
+    private final List<String> leaderboard;
+    private final List<Long> rankedUserIds; // userIds in der Reihenfolge des leaderboard
     private double cookieSpawnRate;
     private boolean powerupsWanted;
     private boolean WinnerRun = false;
@@ -23,9 +31,10 @@ public class Game {
         this.snakes = new ArrayList<>(); // Initialize the snakes list
         this.items = new ArrayList<>(); // Initialize the items list
         this.gameOver = false; // Initialize gameOver flag
-        this.timestamp = 180;
+        this.tick = 0;
         this.winner = null;
         this.leaderboard = new ArrayList<>();
+        this.rankedUserIds = new ArrayList<>();
         this.cookieSpawnRate = 0.3;
         this.powerupsWanted = false;
     }
@@ -42,12 +51,34 @@ public class Game {
         this.powerupsWanted = powerupsWanted;
     }
 
+    public long getTick() {
+        return tick;
+    }
+
+    public void setTick(long tick) {
+        this.tick = tick;
+    }
+
+    public void advanceTick() {
+        this.tick++;
+    }
+
+    public long getRemainingTicks() {
+        return DURATION_TICKS - tick;
+    }
+
+    /**
+     * Remaining game time in seconds, derived from the tick counter.
+     */
     public float getTimestamp() {
-        return timestamp;
+        return getRemainingTicks() * TICK_MILLIS / 1000f;
     }
 
+    /**
+     * Sets the remaining game time in seconds by moving the tick counter accordingly.
+     */
     public void setTimestamp(float timestamp) {
-        this.timestamp = timestamp;
+        this.tick = DURATION_TICKS - Math.round(timestamp * 1000 / TICK_MILLIS);
     }
 
     private static synchronized long generateUniqueGameId() {
@@ -67,12 +98,24 @@ public class Game {
         return leaderboard;
     }
 
-    public void setLeaderboard(List<String> leaderboard) {
-        this.leaderboard = leaderboard;
+    /**
+     * Puts the player of the snake at the top of the leaderboard; once the game is over, the
+     * player entered last is the winner.
+     */
+    public void addLeaderboardEntry(Snake snake) {
+        this.leaderboard.add(0, snake.getUsername());
+        this.rankedUserIds.add(0, snake.getUserId());
+    }
+
+    public boolean isRanked(Long userId) {
+        return rankedUserIds.contains(userId);
     }
 
-    public void addLeaderboardEntry(String entry) {
-        this.leaderboard.add(0, entry);
+    /**
+     * @return userId of the player at the top of the leaderboard, null while it is empty
+     */
+    public Long getWinnerId() {
+        return rankedUserIds.isEmpty() ? null : rankedUserIds.get(0);
     }
 
     public long getGameId() {
@@ -91,32 +134,86 @@ public class Game {
         this.lobby = lobby;
     }
 
+    /**
+     * Participants at game start, the position in the list is the player index.
+     */
+    public List<PlayerProfile> getPlayers() {
+        return players;
+    }
+
+    public void setPlayers(List<PlayerProfile> players) {
+        this.players = List.copyOf(players);
+    }
+
+    public PlayerProfile getPlayer(int index) {
+        return players.get(index);
+    }
+
+    public Board getBoard() {
+        return board;
+    }
+
+    /**
+     * Read-only view, snakes are added and removed through the game so the board stays in sync.
+     */
     public List<Snake> getSnakes() {
-        return snakes;
+        return Collections.unmodifiableList(snakes);
     }
 
     public void setSnakes(List<Snake> snakes) {
-        this.snakes = snakes;
+        for (Snake snake : new ArrayList<>(this.snakes)) {
+            removeSnake(snake);
+        }
+        for (Snake snake : snakes) {
+            addSnake(snake);
+        }
     }
 
     public void addSnake(Snake snake) {
         snakes.add(snake);
+        snake.setGame(this);
+        snake.attachTo(board);
     }
 
     public void removeSnake(Snake snake) {
-        snakes.remove(snake);
+        if (snakes.remove(snake)) {
+            snake.detach();
+        }
     }
 
+    /**
+     * Read-only view, items are added and removed through the game so the board stays in sync.
+     */
     public List<Item> getItems() {
-        return items;
+        return Collections.unmodifiableList(items);
     }
 
     public void setItems(List<Item> items) {
-        this.items = items;
+        for (Item item : this.items) {
+            board.releaseItem(item);
+        }
+        this.items.clear();
+        for (Item item : items) {
+            addItem(item);
+        }
     }
 
     public void addItem(Item item) {
         items.add(item);
+        board.occupyItem(item);
+    }
+
+    public boolean removeItem(Item item) {
+        if (items.remove(item)) {
+            if (board.releaseItem(item)) {
+                // überlappende Items (z.B. im Start-Layout) übernehmen die frei gewordenen Felder
+                for (Item other : items) {
+                    board.indexItem(other);
+                }
+            }
+            return true;
+        }
+        return false;
     }
 
     public void setGameOver(boolean gameOver) {
@@ -131,18 +228,16 @@ public class Game {
         // zählen wieviele Spieler noch leben!
         int alives = 0;
         for (Snake snake : snakes) {
-            int[][] coordinates = snake.getCoordinates();
-            // Überprüfe, ob das Array null ist oder leer ist
-            if (coordinates != null && coordinates.length > 0) {
+            if (snake.isAlive()) {
                 alives++;
             }
         }
         // Game is over when no players have "alive" coordinates OR timer runs out!
         if (lobby.isSolo()) {
-            return alives <= 0 || timestamp <= 0;
+            return alives <= 0 || getRemainingTicks() <= 0;
         }
         else {
-            return alives <= 1 || timestamp <= 0;
+            return alives <= 1 || getRemainingTicks() <= 0;
         }
     }
 
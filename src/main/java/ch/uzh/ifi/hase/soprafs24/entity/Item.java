@@ -1,5 +1,7 @@
 package ch.uzh.ifi.hase.soprafs24.entity;
 
+import ch.uzh.ifi.hase.soprafs24.constant.ItemKind;
+
 public abstract class Item {
     private int[] position;
     private String type;
@@ -10,6 +12,18 @@ public abstract class Item {
     }
     public abstract void applyEffect(Snake snake);
 
+    /**
+     * Kind of the item, the game loop dispatches on it instead of the type string.
+     */
+    public abstract ItemKind getKind();
+
+    /**
+     * Edge length of the square area the item covers on the board, anchored at its position.
+     */
+    public int getFootprint() {
+        return getKind().getFootprint();
+    }
+
     // Getters and setters
     public int[] getPosition() {
         return position;
@@ -0,0 +1,61 @@
+package ch.uzh.ifi.hase.soprafs24.entity;
+
+/**
+ * Immutable snapshot of a participant, taken once when the game is created.
+ * Inside a match players are referenced by {@link #getIndex()}, the position in {@link Game#getPlayers()};
+ * the stats are the values at game start and are not updated while the game runs.
+ */
+public final class PlayerProfile {
+
+    private final int index;
+    private final Long userId;
+    private final String username;
+    private final boolean isBot;
+    private final int wins;
+    private final int kills;
+    private final double level;
+    private final int lengthPR;
+
+    public PlayerProfile(int index, User user) {
+        this.index = index;
+        this.userId = user.getId();
+        this.username = user.getUsername();
+        this.isBot = user.getIsBot();
+        this.wins = user.getWins();
+        this.kills = user.getKills();
+        this.level = user.getLevel();
+        this.lengthPR = user.getLengthPR();
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public boolean getIsBot() {
+        return isBot;
+    }
+
+    public int getWins() {
+        return wins;
+    }
+
+    public int getKills() {
+        return kills;
+    }
+
+    public double getLevel() {
+        return level;
+    }
+
+    public int getLengthPR() {
+        return lengthPR;
+    }
+}
@@ -1,5 +1,6 @@
 package ch.uzh.ifi.hase.soprafs24.entity.Powerdowns;
 
+import ch.uzh.ifi.hase.soprafs24.constant.ItemKind;
 import ch.uzh.ifi.hase.soprafs24.entity.Item;
 import ch.uzh.ifi.hase.soprafs24.entity.Snake;
 
@@ -21,23 +22,18 @@ public class Divider extends Item {
     }
 
     public void applyEffect(Snake snake) {
-        snake.addEffect(this);
-        int[][] oldCoordinates = snake.getCoordinates();
-        if (oldCoordinates.length <= 2) {
+        snake.addEffect(ItemKind.DIVIDER); // wird im naechsten Tick wieder entfernt
+        int oldLength = snake.getLength();
+        if (oldLength <= 2) {
             return;}
 
-        int newLength = (int) Math.ceil(oldCoordinates.length / 2.0);
-        int[][] newCoordinates = new int[newLength][2];
-        // Kopiere den Kopf und die erste Hälfte der Koordinaten
-        for (int i = 0; i < newLength; i++) {
-            newCoordinates[i] = oldCoordinates[i].clone();
-        }
-
-        snake.setCoordinates(newCoordinates);
-    }
-    public void checkIfActive(Snake snake){
-        snake.removeEffect(this);
+        // Kopf und erste Hälfte bleiben, der Rest wird abgeschnitten
+        int newLength = (int) Math.ceil(oldLength / 2.0);
+        snake.truncate(newLength);
     }
 
     public int[][] getFourPositions() {return FourPositions;}
-}
\ No newline at end of file
+
+    @Override
+    public ItemKind getKind() {return ItemKind.DIVIDER;}
+}
@@ -1,10 +1,11 @@
 package ch.uzh.ifi.hase.soprafs24.entity.Powerdowns;
 
+import ch.uzh.ifi.hase.soprafs24.constant.ItemKind;
 import ch.uzh.ifi.hase.soprafs24.entity.Item;
 import ch.uzh.ifi.hase.soprafs24.entity.Snake;
 
 public class ReverseControl extends Item {
-    private int timer;
+    public static final int TURNS = 4; // so viele Richtungswechsel werden umgekehrt
     private int[][] FourPositions;
 
     public ReverseControl(int[] position, String type) {
@@ -18,34 +19,15 @@ public class ReverseControl extends Item {
         this.FourPositions[2] = new int[]{position[0], position[1] + 1};
         // Untere rechte Koordinate (x, y+1)
         this.FourPositions[3] = new int[]{position[0]+1, position[1] + 1};
-        this.timer = 4;
     }
 
     public void applyEffect(Snake snake) {
-        snake.addEffect(this); // when powerup gets eaten... it must be stored
-    }
-
-    public int getTimer() {return timer;}
-
-    public void revertMovement(Snake snake) {
-        timer--;
-        switch (snake.getDirection()) {
-            case "UP":
-                snake.setDirection("DOWN");
-                break;
-            case "DOWN":
-                snake.setDirection("UP");
-                break;
-            case "LEFT":
-                snake.setDirection("RIGHT");
-                break;
-            case "RIGHT":
-                snake.setDirection("LEFT");
-                break;
-        }
-        if (timer <= 0) {snake.removeEffect(this);}
+        // ein neues ReverseControl ersetzt ein aktives
+        snake.addEffect(ItemKind.REVERSE_CONTROL);
+        snake.setReverseTurnsLeft(TURNS);
     }
     public int[][] getFourPositions() {return FourPositions;}
 
-
+    @Override
+    public ItemKind getKind() {return ItemKind.REVERSE_CONTROL;}
 }
@@ -1,5 +1,6 @@
 package ch.uzh.ifi.hase.soprafs24.entity.Powerups;
 
+import ch.uzh.ifi.hase.soprafs24.constant.ItemKind;
 import ch.uzh.ifi.hase.soprafs24.entity.Item;
 import ch.uzh.ifi.hase.soprafs24.entity.Snake;
 
@@ -13,4 +14,7 @@ public class Cookie extends Item {
 
     public void applyEffect(Snake snake) {
     }
+
+    @Override
+    public ItemKind getKind() {return ItemKind.COOKIE;}
 }
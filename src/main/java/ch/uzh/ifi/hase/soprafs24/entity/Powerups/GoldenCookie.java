@@ -1,23 +1,20 @@
 package ch.uzh.ifi.hase.soprafs24.entity.Powerups;
 
+import ch.uzh.ifi.hase.soprafs24.constant.ItemKind;
 import ch.uzh.ifi.hase.soprafs24.entity.Item;
 import ch.uzh.ifi.hase.soprafs24.entity.Snake;
 
 public class GoldenCookie extends Item {
-    private int count = 5;
+    public static final int GROWTH = 5; // Schlange waechst 5 Ticks lang
     public GoldenCookie(int[] position, String type) {
         super(position, type);
     }
 
     public void applyEffect(Snake snake) {
-        snake.addEffect(this);
+        snake.addEffect(ItemKind.GOLDEN_COOKIE);
+        snake.setGoldenGrowthLeft(snake.getGoldenGrowthLeft() + GROWTH);
     }
-    public void growGolden(Snake snake){
-        if (count > 0){
-            snake.addGrowCount();
-            count--;
-        }
-        else{snake.removeEffect(this);}
-    }
-    public int getCount() {return count;}
+
+    @Override
+    public ItemKind getKind() {return ItemKind.GOLDEN_COOKIE;}
 }
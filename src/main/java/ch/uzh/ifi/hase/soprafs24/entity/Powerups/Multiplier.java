@@ -1,24 +1,21 @@
 package ch.uzh.ifi.hase.soprafs24.entity.Powerups;
 
+import ch.uzh.ifi.hase.soprafs24.constant.ItemKind;
 import ch.uzh.ifi.hase.soprafs24.entity.Item;
 import ch.uzh.ifi.hase.soprafs24.entity.Snake;
 
 public class Multiplier extends Item {
-    private float start;
+    public static final long DURATION_TICKS = 50; // 10 Sekunden bei 200ms pro Tick
 
     public Multiplier(int[] position, String type) {
         super(position, type);
     }
 
-    public void applyEffect(Snake snake) {
-        snake.addEffect(this);
-        this.start = snake.getGame().getTimestamp();
+    public void applyEffect(Snake snake) {  // solange der Effekt aktiv ist, zaehlt jeder Cookie doppelt
+        snake.addEffect(ItemKind.MULTIPLIER);
+        snake.setMultiplierExpiryTick(snake.getGame().getTick() + DURATION_TICKS);
     }
 
-    public void multiplyCookie(Snake snake){  // function gets called when cookie gets eaten and this effect is active
-        if (this.start - snake.getGame().getTimestamp() < 10){
-            snake.addGrowCount();
-        }else{snake.removeEffect(this);}
-    }
-    public float getStart() {return start;}
+    @Override
+    public ItemKind getKind() {return ItemKind.MULTIPLIER;}
 }
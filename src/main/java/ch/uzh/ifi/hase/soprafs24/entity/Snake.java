@@ -1,19 +1,31 @@
 package ch.uzh.ifi.hase.soprafs24.entity;
 
+import ch.uzh.ifi.hase.soprafs24.constant.Curve;
+import ch.uzh.ifi.hase.soprafs24.constant.Direction;
+import ch.uzh.ifi.hase.soprafs24.constant.ItemKind;
+
 import java.util.ArrayList;
 import java.util.List;
 
 public class Snake {
+    private static final int INITIAL_CAPACITY = 16; // immer eine Zweierpotenz
     private Game game;
-    private int length;
-    private int[][] coordinates;
-    private String direction;
-    private int[] head;
-    private int[] tail;
+    private Board board; // gesetzt solange die Schlange auf dem Spielfeld eines Games ist
+    // Körper als Ringpuffer gepackter Zellen (siehe packCell), body[headIndex] ist der Kopf
+    private int[] body = new int[INITIAL_CAPACITY];
+    private int headIndex = 0;
+    private int size = 0;
+    private int[][] coordinatesView; // gecachte Ansicht für die Serialisierung, null wenn veraltet
+    private Direction direction;
     private Long userId;
+    private int playerIndex = -1; // Index in Game#getPlayers(), -1 ohne Profil-Tabelle
     private String username;
-    private List<String> directionQueue = new ArrayList<>();
-    private List<Item> effects = new ArrayList<>();
+    private List<Direction> directionQueue = new ArrayList<>();
+    // aktive Effekte als Bitmaske (ein Bit pro ItemKind) plus Zaehler der einzelnen Effekte
+    private int effectMask = 0;
+    private int goldenGrowthLeft = 0;
+    private int reverseTurnsLeft = 0;
+    private long multiplierExpiryTick = 0;
     private int growCount = 0;
     private boolean isBot = false;
 
@@ -22,35 +34,54 @@ public class Snake {
     public void setGrowCount(int growCount){this.growCount = growCount;}
     public void removeGrowCount(){this.growCount--;}
 
-    public void addDirectionQueue(String direction){
+    public void addDirectionQueue(Direction direction){
         if (directionQueue.size() < 2){
             directionQueue.add(direction);
         }
     }
 
-    public List<String> getDirectionQueue(){
+    public List<Direction> getDirectionQueue(){
             return directionQueue; 
     }
     
-    public void setDirectionQueue(List<String> directionQueue){
+    public void setDirectionQueue(List<Direction> directionQueue){
         this.directionQueue = directionQueue;
     }
 
-    public String popDirectionQueue(){
+    public Direction popDirectionQueue(){
         if (directionQueue.size() > 0){
-            String direction = directionQueue.get(0);
+            Direction direction = directionQueue.get(0);
             directionQueue.remove(0);
             return direction;
         }
         return null;
     }
-    public List<Item> getEffects() {return effects;}
-    public void setEffects(List<Item> effects) {this.effects = effects;}
-    public void addEffect(Item effect) {this.effects.add(effect);}
-    public void removeEffect(Item effect) {this.effects.remove(effect);}
-    public boolean hasEffect(Item effect) {return this.effects.contains(effect);}
-    public boolean hasEffects() {return this.effects.size() > 0;}
-    public boolean hasNoEffects() {return this.effects.size() == 0;}
+    private static int effectBit(ItemKind kind) {return 1 << kind.ordinal();}
+
+    public int getEffectMask() {return effectMask;}
+    public void addEffect(ItemKind kind) {this.effectMask |= effectBit(kind);}
+    public void removeEffect(ItemKind kind) {this.effectMask &= ~effectBit(kind);}
+    public boolean hasEffect(ItemKind kind) {return (this.effectMask & effectBit(kind)) != 0;}
+    public boolean hasEffects() {return this.effectMask != 0;}
+    public boolean hasNoEffects() {return this.effectMask == 0;}
+    public void clearEffects() {
+        this.effectMask = 0;
+        this.goldenGrowthLeft = 0;
+        this.reverseTurnsLeft = 0;
+        this.multiplierExpiryTick = 0;
+    }
+
+    // Ticks, in denen die Schlange wegen eines GoldenCookie noch waechst
+    public int getGoldenGrowthLeft() {return goldenGrowthLeft;}
+    public void setGoldenGrowthLeft(int goldenGrowthLeft) {this.goldenGrowthLeft = goldenGrowthLeft;}
+
+    // Richtungswechsel, die ReverseControl noch umkehrt
+    public int getReverseTurnsLeft() {return reverseTurnsLeft;}
+    public void setReverseTurnsLeft(int reverseTurnsLeft) {this.reverseTurnsLeft = reverseTurnsLeft;}
+
+    // erster Tick, in dem der Multiplier nicht mehr wirkt
+    public long getMultiplierExpiryTick() {return multiplierExpiryTick;}
+    public void setMultiplierExpiryTick(long multiplierExpiryTick) {this.multiplierExpiryTick = multiplierExpiryTick;}
 
     public Game getGame() {return game;}
     public void setGame(Game game) {this.game = game;}
@@ -61,44 +92,179 @@ public class Snake {
     public void setUsername(String username) {
         this.username = username;
     }
+    /**
+     * Packs a coordinate into one int. The head may leave the field (wall collision),
+     * so both halves are signed 16 bit values.
+     */
+    public static int packCell(int x, int y) {
+        return (y << 16) | (x & 0xFFFF);
+    }
+
+    public static int cellX(int cell) {
+        return (short) cell;
+    }
+
+    public static int cellY(int cell) {
+        return cell >> 16;
+    }
+
     public int getLength() {
-        return length;
+        return size;
+    }
+
+    /**
+     * @return packed cell of the i-th segment, 0 being the head
+     */
+    public int cellAt(int i) {
+        return body[(headIndex + i) & (body.length - 1)];
     }
 
-    public void setLength(int length) {
-        this.length = length;
+    public int getHeadX() {
+        return cellX(body[headIndex]);
     }
 
+    public int getHeadY() {
+        return cellY(body[headIndex]);
+    }
+
+    public int[] getHead() {
+        return size == 0 ? null : new int[]{getHeadX(), getHeadY()};
+    }
+
+    public int[] getTail() {
+        if (size == 0) {
+            return null;
+        }
+        int tail = cellAt(size - 1);
+        return new int[]{cellX(tail), cellY(tail)};
+    }
+
+    /**
+     * Read-only view of the body, head first. The array is rebuilt only after the body changed
+     * and must not be modified by the caller.
+     */
     public int[][] getCoordinates() {
-        return coordinates;
+        if (coordinatesView == null) {
+            int[][] view = new int[size][];
+            for (int i = 0; i < size; i++) {
+                int cell = cellAt(i);
+                view[i] = new int[]{cellX(cell), cellY(cell)};
+            }
+            coordinatesView = view;
+        }
+        return coordinatesView;
     }
 
     public void setCoordinates(int[][] coordinates) {
-        this.coordinates = coordinates;
+        if (board != null) {
+            releaseBody();
+        }
+        int length = coordinates == null ? 0 : coordinates.length;
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < length) {
+            capacity <<= 1;
+        }
+        body = new int[capacity];
+        headIndex = 0;
+        size = length;
+        for (int i = 0; i < length; i++) {
+            body[i] = packCell(coordinates[i][0], coordinates[i][1]);
+        }
+        coordinatesView = null;
+        if (board != null) {
+            occupyBody();
+        }
     }
 
-    public String getDirection() {
-        return direction;
+    /**
+     * Moves the head onto a new cell. The tail is dropped unless the snake grows this tick.
+     */
+    public void moveHead(int x, int y, boolean keepTail) {
+        if (keepTail && size == body.length) {
+            grow();
+        }
+        if (!keepTail) {
+            size--;
+            if (board != null) {
+                int tail = cellAt(size);
+                board.releaseSnake(cellX(tail), cellY(tail));
+            }
+        }
+        headIndex = (headIndex - 1) & (body.length - 1);
+        body[headIndex] = packCell(x, y);
+        size++;
+        if (board != null) {
+            board.occupySnake(x, y);
+        }
+        coordinatesView = null;
     }
 
-    public void setDirection(String direction) {
-        this.direction = direction;
+    /**
+     * Keeps the head and the first {@code newLength - 1} body segments and cuts off the rest.
+     */
+    public void truncate(int newLength) {
+        if (newLength >= size) {
+            return;
+        }
+        if (board != null) {
+            for (int i = newLength; i < size; i++) {
+                int cell = cellAt(i);
+                board.releaseSnake(cellX(cell), cellY(cell));
+            }
+        }
+        size = newLength;
+        coordinatesView = null;
     }
 
-    public int[] getHead() {
-        return head;
+    public boolean isAlive() {
+        return size > 0;
     }
 
-    public void setHead(int[] head) {
-        this.head = head;
+    private void grow() {
+        int[] grown = new int[body.length << 1];
+        for (int i = 0; i < size; i++) {
+            grown[i] = cellAt(i);
+        }
+        body = grown;
+        headIndex = 0;
     }
 
-    public int[] getTail() {
-        return tail;
+    private void occupyBody() {
+        for (int i = 0; i < size; i++) {
+            int cell = cellAt(i);
+            board.occupySnake(cellX(cell), cellY(cell));
+        }
+    }
+
+    private void releaseBody() {
+        for (int i = 0; i < size; i++) {
+            int cell = cellAt(i);
+            board.releaseSnake(cellX(cell), cellY(cell));
+        }
     }
 
-    public void setTail(int[] tail) {
-        this.tail = tail;
+    void attachTo(Board board) {
+        if (this.board == board) {
+            return;
+        }
+        detach();
+        this.board = board;
+        occupyBody();
+    }
+
+    void detach() {
+        if (board != null) {
+            releaseBody();
+        }
+        board = null;
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    public void setDirection(Direction direction) {
+        this.direction = direction;
     }
 
     public Long getUserId() {
@@ -109,6 +275,14 @@ public class Snake {
         this.userId = userId;
     }
 
+    public int getPlayerIndex() {
+        return playerIndex;
+    }
+
+    public void setPlayerIndex(int playerIndex) {
+        this.playerIndex = playerIndex;
+    }
+
     public void setIsBot(boolean isBot) {
         this.isBot = isBot;
     }
@@ -118,12 +292,12 @@ public class Snake {
 
 
     // Only needed for BOTS
-    private String previousCurve;
+    private Curve previousCurve;
 
-    public String getPreviousCurve() {
+    public Curve getPreviousCurve() {
         return previousCurve;
     }
-    public void setPreviousCurve(String previousCurve) {
+    public void setPreviousCurve(Curve previousCurve) {
         this.previousCurve = previousCurve;
     }
 }
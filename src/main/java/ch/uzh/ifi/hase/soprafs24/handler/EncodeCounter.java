@@ -0,0 +1,69 @@
+package ch.uzh.ifi.hase.soprafs24.handler;
+
+import ch.uzh.ifi.hase.soprafs24.entity.Game;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts how many broadcast payloads are serialized, grouped into windows of one game tick
+ * ({@link Game#TICK_MILLIS}). Since every broadcast is encoded once and the same frame is sent to
+ * all participants, the count per tick should match the number of broadcasts, not the number of
+ * recipients.
+ */
+public class EncodeCounter {
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(Game.TICK_MILLIS);
+
+    private long total = 0;
+    private long currentWindow = -1;
+    private int currentCount = 0;
+    private int lastTickCount = 0;
+    private int maxPerTick = 0;
+
+    public void record() {
+        record(System.nanoTime());
+    }
+
+    synchronized void record(long nanoTime) {
+        roll(nanoTime / TICK_NANOS);
+        currentCount++;
+        total++;
+        maxPerTick = Math.max(maxPerTick, currentCount);
+    }
+
+    /**
+     * @return number of encodes since startup
+     */
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return number of encodes in the last completed tick window
+     */
+    public int getLastTick() {
+        return getLastTick(System.nanoTime());
+    }
+
+    synchronized int getLastTick(long nanoTime) {
+        roll(nanoTime / TICK_NANOS);
+        return lastTickCount;
+    }
+
+    /**
+     * @return the highest number of encodes seen within a single tick window
+     */
+    public synchronized int getMaxPerTick() {
+        return maxPerTick;
+    }
+
+    // beginnt ein neues Fenster; lagen leere Fenster dazwischen, war der letzte Tick leer
+    private void roll(long window) {
+        if (window == currentWindow) {
+            return;
+        }
+        lastTickCount = window == currentWindow + 1 ? currentCount : 0;
+        currentWindow = window;
+        currentCount = 0;
+    }
+}
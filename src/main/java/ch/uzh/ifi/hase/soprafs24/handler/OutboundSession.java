@@ -0,0 +1,211 @@
+package ch.uzh.ifi.hase.soprafs24.handler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Session with its own bounded outgoing queue, drained by a sender thread so the game loop never
+ * waits for the network. A session that queues too many bytes or blocks a send for too long is
+ * closed with {@link CloseStatus#SESSION_NOT_RELIABLE}. A game frame sent with
+ * {@link #sendLatest(WebSocketMessage)} replaces the previous one if that is still queued.
+ */
+public class OutboundSession extends WebSocketSessionDecorator {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboundSession.class);
+
+    private final Executor sender;
+    private final Executor closer;
+    private final long sendTimeLimitNanos;
+    private final int bufferSizeLimit;
+
+    private final Queue<Pending> queue = new ConcurrentLinkedQueue<>();
+    // zuletzt eingereihter Spiel-Frame, solange er noch nicht gesendet wurde
+    private final AtomicReference<Pending> latestFrame = new AtomicReference<>();
+    private final AtomicBoolean keyframeRequested = new AtomicBoolean();
+    private final AtomicInteger bufferedBytes = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    // Start des laufenden Sendevorgangs, 0 wenn gerade nichts gesendet wird
+    private volatile long sendStartNanos = 0;
+    private volatile boolean limitExceeded = false;
+
+    public OutboundSession(WebSocketSession delegate, Executor sender, int sendTimeLimitMillis, int bufferSizeLimit) {
+        this(delegate, sender, sender, sendTimeLimitMillis, bufferSizeLimit);
+    }
+
+    /**
+     * @param closer runs the close of a session that exceeded a limit; separate from the sender,
+     *               so a sender pool whose threads are all blocked on slow clients can still free them
+     */
+    public OutboundSession(WebSocketSession delegate, Executor sender, Executor closer,
+                           int sendTimeLimitMillis, int bufferSizeLimit) {
+        super(delegate);
+        this.sender = sender;
+        this.closer = closer;
+        this.sendTimeLimitNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeLimitMillis);
+        this.bufferSizeLimit = bufferSizeLimit;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        enqueue(message, false);
+    }
+
+    /**
+     * Enqueues a game frame that replaces the previous frame if that one has not been sent yet.
+     *
+     * @return whether an unsent frame was replaced; the client then misses it and needs a keyframe
+     */
+    public boolean sendLatest(WebSocketMessage<?> message) {
+        return enqueue(message, true);
+    }
+
+    /**
+     * The client asked for a keyframe; the next game frame broadcast sends it one.
+     */
+    public void requestKeyframe() {
+        keyframeRequested.set(true);
+    }
+
+    public boolean takeKeyframeRequest() {
+        return keyframeRequested.getAndSet(false);
+    }
+
+    private boolean enqueue(WebSocketMessage<?> message, boolean supersedes) {
+        if (limitExceeded) {
+            return false;
+        }
+        long sendStart = sendStartNanos;
+        if (sendStart != 0 && System.nanoTime() - sendStart > sendTimeLimitNanos) {
+            exceedLimit("send time limit");
+            return false;
+        }
+        Pending pending = new Pending(message);
+        boolean replaced = false;
+        if (supersedes) {
+            // zuerst den alten Frame verwerfen, damit er nicht gegen das Limit zaehlt
+            Pending previous = latestFrame.getAndSet(pending);
+            if (previous != null && previous.take() != null) {
+                bufferedBytes.addAndGet(-previous.size);
+                replaced = true;
+            }
+        }
+        if (bufferedBytes.addAndGet(pending.size) > bufferSizeLimit) {
+            bufferedBytes.addAndGet(-pending.size);
+            exceedLimit("buffer size limit");
+            return replaced;
+        }
+        queue.add(pending);
+        scheduleDrain();
+        return replaced;
+    }
+
+    /**
+     * @return number of bytes queued but not sent yet
+     */
+    public int getBufferedBytes() {
+        return bufferedBytes.get();
+    }
+
+    public boolean isLimitExceeded() {
+        return limitExceeded;
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                sender.execute(this::drain);
+            }
+            catch (RejectedExecutionException e) {
+                // Server faehrt herunter
+                draining.set(false);
+            }
+        }
+    }
+
+    private void drain() {
+        do {
+            Pending pending;
+            while ((pending = queue.poll()) != null) {
+                WebSocketMessage<?> message = pending.take();
+                if (message == null) {
+                    // durch einen neueren Frame ersetzt
+                    continue;
+                }
+                try {
+                    if (!limitExceeded && isOpen()) {
+                        sendStartNanos = System.nanoTime();
+                        // direkte Antworten des Handlers sperren dieselbe Session
+                        synchronized (getDelegate()) {
+                            getDelegate().sendMessage(message);
+                        }
+                    }
+                }
+                catch (IOException | RuntimeException e) {
+                    logger.warn("Sending to session {} failed: {}", getId(), e.getMessage());
+                }
+                finally {
+                    sendStartNanos = 0;
+                    bufferedBytes.addAndGet(-pending.size);
+                }
+            }
+            draining.set(false);
+            // eine Nachricht kann nach poll() == null, aber vor draining = false eingereiht worden sein
+        } while (!queue.isEmpty() && draining.compareAndSet(false, true));
+    }
+
+    private void exceedLimit(String limit) {
+        limitExceeded = true;
+        logger.warn("Session {} exceeded the {} ({} bytes queued), closing it", getId(), limit, bufferedBytes.get());
+        queue.clear();
+        latestFrame.set(null);
+        try {
+            // auch das Schliessen kann bei einem haengenden Client blockieren
+            closer.execute(this::closeNotReliable);
+        }
+        catch (RejectedExecutionException e) {
+            closeNotReliable();
+        }
+    }
+
+    private void closeNotReliable() {
+        try {
+            getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE);
+        }
+        catch (IOException | RuntimeException e) {
+            logger.warn("Closing session {} failed: {}", getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Queue entry; a replaced frame is set to null and skipped when the queue is drained.
+     */
+    private static final class Pending {
+        private final AtomicReference<WebSocketMessage<?>> message;
+        // beim Einreihen gemessen, das Senden verschiebt die Position eines binaeren Puffers
+        private final int size;
+
+        private Pending(WebSocketMessage<?> message) {
+            this.message = new AtomicReference<>(message);
+            this.size = message.getPayloadLength();
+        }
+
+        // liefert die Nachricht genau einmal, danach null
+        private WebSocketMessage<?> take() {
+            return message.getAndSet(null);
+        }
+    }
+}
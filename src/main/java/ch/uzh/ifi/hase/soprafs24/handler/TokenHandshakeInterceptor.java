@@ -0,0 +1,59 @@
+package ch.uzh.ifi.hase.soprafs24.handler;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Map;
+
+/**
+ * Resolves the {@code token} query parameter once, before the WebSocket upgrade. Unknown tokens
+ * are rejected with 401; for known ones the identity of the user is stored in the session
+ * attributes, so the message handlers do not have to parse the URI or look up the token again.
+ */
+public class TokenHandshakeInterceptor implements HandshakeInterceptor {
+
+    public static final String TOKEN = "token";
+    public static final String USER_ID = "userId";
+    public static final String USERNAME = "username";
+    public static final String IS_BOT = "isBot";
+    public static final String LOBBY_CODE = "lobbyCode";
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenHandshakeInterceptor.class);
+
+    private final UserRepository userRepository;
+
+    public TokenHandshakeInterceptor(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        String token = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst(TOKEN);
+        User user = token == null ? null : userRepository.findByToken(token);
+        if (user == null) {
+            logger.warn("Rejected WebSocket handshake with unknown token");
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+        attributes.put(USER_ID, user.getId());
+        attributes.put(USERNAME, user.getUsername());
+        attributes.put(IS_BOT, user.getIsBot());
+        attributes.put(LOBBY_CODE, user.getLobbyCode());
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+        // nichts zu tun
+    }
+}
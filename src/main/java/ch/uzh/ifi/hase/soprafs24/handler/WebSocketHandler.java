@@ -1,5 +1,7 @@
 package ch.uzh.ifi.hase.soprafs24.handler;
 
+import ch.uzh.ifi.hase.soprafs24.constant.Direction;
+import ch.uzh.ifi.hase.soprafs24.controller.SessionRegistry;
 import ch.uzh.ifi.hase.soprafs24.entity.Game;
 import ch.uzh.ifi.hase.soprafs24.entity.Snake;
 import ch.uzh.ifi.hase.soprafs24.repository.LobbyRepository;
@@ -11,10 +13,14 @@ import ch.uzh.ifi.hase.soprafs24.service.LobbyService;
 import ch.uzh.ifi.hase.soprafs24.service.UserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.annotation.Autowired;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -22,20 +28,51 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 
 
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.List;
 
 
 
 import static ch.uzh.ifi.hase.soprafs24.service.LobbyService.getGameByLobby;
 
-public class WebSocketHandler extends TextWebSocketHandler {
+public class WebSocketHandler extends TextWebSocketHandler implements SubProtocolCapable {
+
+    /**
+     * Subprotocol for clients that want the gameState frames binary encoded
+     * (see {@link ch.uzh.ifi.hase.soprafs24.service.BinaryFrameEncoder}). All other messages stay JSON.
+     */
+    public static final String BINARY_PROTOCOL = "snake-binary-v1";
 
     private static final Logger logger = LoggerFactory.getLogger(WebSocketHandler.class);
     private final ObjectMapper mapper = new ObjectMapper();
-    private static final Map<Long, WebSocketSession> userSessions = new ConcurrentHashMap<>();
+    private static final SessionRegistry sessionRegistry = new SessionRegistry();
+    private static final Map<Long, WebSocketSession> userSessions = sessionRegistry.getUserSessions();
+    private final EncodeCounter encodeCounter = new EncodeCounter();
+    // leert die Ausgangswarteschlangen der Sessions, damit die Game-Loop nie auf das Netzwerk wartet;
+    // feste Groesse, damit langsame Clients nicht beliebig viele Threads binden (erst bei Bedarf erzeugt,
+    // weil die Groesse aus der Konfiguration kommt)
+    private ExecutorService outboundSender;
+    // schliesst Sessions, die ein Limit ueberschritten haben, auch wenn alle Sender-Threads blockieren
+    private ExecutorService outboundCloser;
+
+    // Session-ID -> Partie und Schlange des Spielers, gesetzt beim Spielstart fuer playerMove
+    private final Map<String, PlayerBinding> playerBindings = new ConcurrentHashMap<>();
+
+    @Value("${websocket.outbound.send-time-limit-ms:5000}")
+    private int sendTimeLimitMillis = 5000;
+
+    @Value("${websocket.outbound.buffer-size-limit:524288}")
+    private int bufferSizeLimit = 512 * 1024;
+
+    @Value("${websocket.outbound.sender-threads:8}")
+    private int senderThreads = 8;
 
     @Autowired
     private LobbyService lobbyService;
@@ -61,25 +98,33 @@ public class WebSocketHandler extends TextWebSocketHandler {
         return userSessions.get(userId);
     }
 
+    @Override
+    public List<String> getSubProtocols() {
+        return List.of(BINARY_PROTOCOL);
+    }
+
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         // This method is called when a new WebSocket connection is established
         try {
             logger.info("afterConnectionEstablished called with session: " + session.getId());
 
-            // Extract token from URL query parameters
-            String token = getTokenFromSession(session);
-            logger.info("Connection token: " + token);
-            User user = userRepository.findByToken(token);
+            // der Handshake hat den Token bereits aufgeloest
+            Long userId = getSessionUserId(session);
+            if (userId == null) {
+                throw new IllegalStateException("Session did not pass the token handshake");
+            }
 
-            userSessions.put(user.getId(), session);
+            sessionRegistry.register(userId, new OutboundSession(session, getOutboundSender(), getOutboundCloser(), sendTimeLimitMillis, bufferSizeLimit));
 
             ObjectNode response = mapper.createObjectNode();
             response.put("type", "connection_success");
             response.put("message", "Connection established successfully");
 
             // Send as JSON string
-            session.sendMessage(new TextMessage(mapper.writeValueAsString(response)));
+            synchronized (session) {
+                session.sendMessage(new TextMessage(mapper.writeValueAsString(response)));
+            }
 
         } catch (Exception e) {
             logger.error("Error establishing WebSocket connection", e);
@@ -89,27 +134,148 @@ public class WebSocketHandler extends TextWebSocketHandler {
 
     }
 
+    /**
+     * Encodes a message for the wire; called at most once per broadcast.
+     */
+    @FunctionalInterface
+    public interface FrameEncoder {
+        byte[] encode() throws IOException;
+    }
+
+    /**
+     * Sends the message to every connected participant of the lobby. The message is serialized
+     * only once, the resulting frame is immutable and shared by all sessions.
+     */
     public void broadcastToLobby(long lobbyCode, ObjectNode updateMessage) throws IOException {
-        // Retrieve the lobby by its code
-        Lobby lobby = lobbyService.getLobbyById(lobbyCode);
-        if (lobby == null) {
+        broadcast(lobbyCode, new LazyFrame(() -> mapper.writeValueAsBytes(updateMessage), null), null, false);
+    }
+
+    /**
+     * Like {@link #broadcastToLobby(long, ObjectNode)} for game frames that encode themselves, e.g.
+     * the countdown. Sessions that negotiated the {@link #BINARY_PROTOCOL} get the binary
+     * encoding. Each encoding is produced at most once and only if a recipient needs it.
+     * A frame replaces the previous frame still queued for a lagging session (latest state wins).
+     *
+     * @param textFrame   encodes the message as UTF-8 JSON
+     * @param binaryFrame encodes the message binary; null sends JSON to every session
+     */
+    public void broadcastToLobby(long lobbyCode, FrameEncoder textFrame, FrameEncoder binaryFrame) throws IOException {
+        broadcast(lobbyCode, new LazyFrame(textFrame, binaryFrame), null, true);
+    }
+
+    /**
+     * Broadcasts a delta frame of the streamed gameState. A session that missed the previous frame
+     * or asked for a keyframe gets the keyframe of the same state instead; the other sessions
+     * keep getting the delta.
+     *
+     * @param textKeyframe   encodes the current state as a JSON keyframe
+     * @param binaryKeyframe encodes the current state as a binary keyframe
+     */
+    public void broadcastToLobby(long lobbyCode, FrameEncoder textFrame, FrameEncoder binaryFrame,
+                                 FrameEncoder textKeyframe, FrameEncoder binaryKeyframe) throws IOException {
+        broadcast(lobbyCode, new LazyFrame(textFrame, binaryFrame), new LazyFrame(textKeyframe, binaryKeyframe), true);
+    }
+
+    private void broadcast(long lobbyCode, LazyFrame frame, LazyFrame keyframe, boolean supersedes) throws IOException {
+        // Empfaenger kommen aus dem Roster im Speicher, nicht aus der Datenbank
+        List<Long> participantIds = lobbyService.getParticipantIds(lobbyCode);
+        if (participantIds.isEmpty()) {
             logger.info("Lobby not found for code: " + lobbyCode);
             return;
         }
 
-        // Iterate over participant IDs and send messages to their sessions
-        lobby.getParticipantIds().forEach(id -> {
+        for (Long id : participantIds) {
             WebSocketSession individualSession = getSessionByUserId(id);
+            if (individualSession == null || !individualSession.isOpen()) {
+                continue;
+            }
+            WebSocketMessage<?> message = frame.messageFor(individualSession);
+            if (supersedes && individualSession instanceof OutboundSession) {
+                OutboundSession outbound = (OutboundSession) individualSession;
+                boolean missedFrame = outbound.sendLatest(message);
+                if (keyframe != null && (missedFrame | outbound.takeKeyframeRequest())) {
+                    // ersetzt das Delta nur fuer diese Session
+                    outbound.sendLatest(keyframe.messageFor(individualSession));
+                }
+                continue;
+            }
             try {
-                if (individualSession != null && individualSession.isOpen()) {
-                    synchronized (individualSession) {
-                        individualSession.sendMessage(new TextMessage(mapper.writeValueAsString(updateMessage)));
-                    }
+                synchronized (individualSession) {
+                    individualSession.sendMessage(message);
                 }
             } catch (IOException e) {
                 logger.error("Error sending message to user {}", id, e);
             }
-        });
+        }
+    }
+
+    /**
+     * Kodiert eine Nachricht pro Protokoll hoechstens einmal, erst wenn ein Empfaenger sie braucht.
+     */
+    private final class LazyFrame {
+        private final FrameEncoder textFrame;
+        private final FrameEncoder binaryFrame;
+        private TextMessage text;
+        private byte[] binary;
+
+        private LazyFrame(FrameEncoder textFrame, FrameEncoder binaryFrame) {
+            this.textFrame = textFrame;
+            this.binaryFrame = binaryFrame;
+        }
+
+        private WebSocketMessage<?> messageFor(WebSocketSession session) throws IOException {
+            if (binaryFrame != null && BINARY_PROTOCOL.equals(session.getAcceptedProtocol())) {
+                if (binary == null) {
+                    binary = binaryFrame.encode();
+                    encodeCounter.record();
+                }
+                // eigener ByteBuffer pro Session, das Senden verschiebt dessen Position
+                return new BinaryMessage(binary);
+            }
+            if (text == null) {
+                text = new TextMessage(textFrame.encode());
+                encodeCounter.record();
+            }
+            return text;
+        }
+    }
+
+    /**
+     * Binds the session of every human player to its game and snake, so that playerMove messages
+     * need neither the token lookup nor the lobby and game queries.
+     */
+    void bindPlayers(Game game) {
+        for (Snake snake : game.getSnakes()) {
+            WebSocketSession playerSession = snake.getUserId() == null ? null : getSessionByUserId(snake.getUserId());
+            if (playerSession != null) {
+                playerBindings.put(playerSession.getId(), new PlayerBinding(game, snake));
+            }
+        }
+    }
+
+    /**
+     * Drops the bindings of a finished game, so moves of its players go through the lookup again
+     * and the game is not kept alive by open sessions.
+     */
+    public void unbindPlayers(Game game) {
+        playerBindings.values().removeIf(binding -> binding.game == game);
+    }
+
+    /**
+     * Partie und Schlange, die zu einer Session gehoeren.
+     */
+    private static final class PlayerBinding {
+        private final Game game;
+        private final Snake snake;
+
+        private PlayerBinding(Game game, Snake snake) {
+            this.game = game;
+            this.snake = snake;
+        }
+    }
+
+    public EncodeCounter getEncodeCounter() {
+        return encodeCounter;
     }
 
     @Override
@@ -131,11 +297,9 @@ public class WebSocketHandler extends TextWebSocketHandler {
 
             // Check if it's a create_lobby message
             if ("create_lobby".equals(type)) {
-                // Extract token from session
-                String token = getTokenFromSession(session);
                 try {
-                    // Get user from token
-                    User user = userService.getUserByToken(token);
+                    // Get user from session
+                    User user = loadSessionUser(session);
 
                     if (user == null) {
                         sendErrorMessage(session, "Invalid token or user not found");
@@ -145,12 +309,15 @@ public class WebSocketHandler extends TextWebSocketHandler {
                     // Direct call to LobbyService's createLobby method
                     Lobby lobby = lobbyService.createPrivateLobby(user);
                     lobbyService.addLobbyCodeToUser(user, lobby.getId());
+                    setSessionLobbyCode(session, lobby.getId());
                     // Send success response with the lobby ID
                     ObjectNode response = mapper.createObjectNode();
                     response.put("type", "lobby_created");
                     response.put("lobbyId", lobby.getId());
 
-                    session.sendMessage(new TextMessage(mapper.writeValueAsString(response)));
+                    synchronized (session) {
+                        session.sendMessage(new TextMessage(mapper.writeValueAsString(response)));
+                    }
                     logger.info("Created lobby for session: {}", session.getId());
 
 
@@ -159,10 +326,8 @@ public class WebSocketHandler extends TextWebSocketHandler {
                     sendErrorMessage(session, "Failed to create lobby: " + e.getMessage());
                 }
             } else if ("validateLobby".equals(type)) {
-                String token = getTokenFromSession(session);
-
                 try {
-                    User user = userService.getUserByToken(token);
+                    User user = loadSessionUser(session);
                     long lobbyCode = jsonNode.get("lobbyCode").asInt();
 
                     if (user == null) {
@@ -189,14 +354,17 @@ public class WebSocketHandler extends TextWebSocketHandler {
                         Lobby lobby = lobbyService.getLobbyById(lobbyCode);
                         lobby.addParticipant(user);
                         lobbyRepository.save(lobby);
+                        lobbyService.updateRoster(lobby);
 
-                        session.getAttributes().put("lobbyCode", lobbyCode);
+                        setSessionLobbyCode(session, lobbyCode);
 
                         sendLobbyStateToUsers(lobbyCode);
 
 
                     }
-                    session.sendMessage(new TextMessage(mapper.writeValueAsString(response)));
+                    synchronized (session) {
+                        session.sendMessage(new TextMessage(mapper.writeValueAsString(response)));
+                    }
                 } catch (Exception e) {
                     logger.error("Error creating lobby", e);
                     sendErrorMessage(session, "Failed to join lobby: " + e.getMessage());
@@ -204,15 +372,12 @@ public class WebSocketHandler extends TextWebSocketHandler {
 
             }
             else if ("lobbySettings".equals(type)) {
-                String token = getTokenFromSession(session);
                 try {
-                    // Get user from token
-                    User user = userService.getUserByToken(token);
-                    if (user == null) {
+                    if (getSessionUserId(session) == null) {
                         sendErrorMessage(session, "Invalid token");
                         return;
                     }
-                    long lobbyCode = user.getLobbyCode();
+                    long lobbyCode = getSessionLobbyCode(session);
                     Lobby lobby = lobbyService.getLobbyById(lobbyCode);
                     if (lobby == null) {
                         sendErrorMessage(session, "Invalid lobby ID");
@@ -247,15 +412,12 @@ public class WebSocketHandler extends TextWebSocketHandler {
                 }
             }
             else if ("requestSettings".equals(type)) {
-                String token = getTokenFromSession(session);
                 try {
-                    // Get user from token
-                    User user = userService.getUserByToken(token);
-                    if (user == null) {
+                    if (getSessionUserId(session) == null) {
                         sendErrorMessage(session, "Invalid token");
                         return;
                     }
-                    long lobbyCode = user.getLobbyCode();
+                    long lobbyCode = getSessionLobbyCode(session);
                     Lobby lobby = lobbyService.getLobbyById(lobbyCode);
                     if (lobby == null) {
                         sendErrorMessage(session, "Invalid lobby ID");
@@ -278,19 +440,13 @@ public class WebSocketHandler extends TextWebSocketHandler {
                 }
             }
             else if ("startGame".equals(type)) {
-                // Extract token from session
-                String token = getTokenFromSession(session);
-
                 try {
-                    // Get user from token
-                    User user = userService.getUserByToken(token);
-
-                    if (user == null) {
+                    if (getSessionUserId(session) == null) {
                         sendErrorMessage(session, "Invalid token or Admin not found");
                         return;
                     }
                     // find lobby code from session attributes
-                    long lobbyCode = user.getLobbyCode();
+                    long lobbyCode = getSessionLobbyCode(session);
                     Lobby lobby = lobbyService.getLobbyById(lobbyCode);
                     if (lobby == null) {
                         sendErrorMessage(session, "Invalid lobby ID");
@@ -320,6 +476,7 @@ public class WebSocketHandler extends TextWebSocketHandler {
                     lobby.setGameId(game.getGameId());
                     lobbyRepository.save(lobby);
                     gameService.start(game);
+                    bindPlayers(game);
 
                     // Spielzustand an alle Clients senden
                     ObjectNode startMessage = mapper.createObjectNode();
@@ -332,25 +489,36 @@ public class WebSocketHandler extends TextWebSocketHandler {
                     sendErrorMessage(session, "Failed to start game: " + e.getMessage());
                 }
             } else if ("lobbystate".equals(type)) {
-                String token = getTokenFromSession(session);
-                User user = userService.getUserByToken(token);
-            
-                if (user == null) {
+                if (getSessionUserId(session) == null) {
                     sendErrorMessage(session, "Invalid token or user not found");
                     return;
                 }
             
-                long lobbyCode = user.getLobbyCode();
+                long lobbyCode = getSessionLobbyCode(session);
                 sendLobbyStateToUsers(lobbyCode);
             } else if ("playerMove".equals(type)) {
-                String token = getTokenFromSession(session);
                 try {
-                    User user = userService.getUserByToken(token);
-                    if (user == null) {
+                    // schneller Weg ohne Datenbank, wenn die Session beim Spielstart gebunden wurde
+                    PlayerBinding binding = playerBindings.get(session.getId());
+                    if (binding != null) {
+                        String direction = jsonNode.get("direction").asText();
+                        Direction parsedDirection = Direction.parse(direction);
+                        if (parsedDirection == null) {
+                            sendErrorMessage(session, "Invalid direction");
+                            return;
+                        }
+                        gameService.respondToKeyInputs(binding.snake, parsedDirection);
+                        ObjectNode keyChange = mapper.createObjectNode();
+                        keyChange.put("type", "direction changed based on keyInput to " + direction);
+                        broadcastToLobby(binding.game.getLobby().getId(), keyChange);
+                        return;
+                    }
+                    Long userId = getSessionUserId(session);
+                    if (userId == null) {
                         sendErrorMessage(session, "Invalid token or user not found");
                         return;
                     }
-                    long lobbyCode = user.getLobbyCode();
+                    long lobbyCode = getSessionLobbyCode(session);
                     Lobby lobby = lobbyService.getLobbyById(lobbyCode);
                     if (lobby == null) {
                         sendErrorMessage(session, "Invalid lobby ID");
@@ -362,8 +530,14 @@ public class WebSocketHandler extends TextWebSocketHandler {
                         sendErrorMessage(session, "Game not found for lobby");
                         return;
                     }
+                    // die Richtung wird nur hier geparst, die Game-Loop arbeitet mit dem Enum
                     String direction = jsonNode.get("direction").asText();
-                    gameService.respondToKeyInputs(game, user, direction);
+                    Direction parsedDirection = Direction.parse(direction);
+                    if (parsedDirection == null) {
+                        sendErrorMessage(session, "Invalid direction");
+                        return;
+                    }
+                    gameService.respondToKeyInputs(game, userId, parsedDirection);
 
                     ObjectNode keyChange = mapper.createObjectNode();
                     keyChange.put("type", "direction changed based on keyInput to " + direction);
@@ -373,12 +547,34 @@ public class WebSocketHandler extends TextWebSocketHandler {
                     logger.error("Error processing player move", e);
                     sendErrorMessage(session, "Failed to process player move: " + e.getMessage());
                 }
+            } else if ("requestKeyframe".equals(type)) {
+                // Client hat einen Delta-Frame verpasst und braucht wieder den ganzen Zustand
+                Long userId = getSessionUserId(session);
+                WebSocketSession outbound = userId == null ? null : getSessionByUserId(userId);
+                if (outbound instanceof OutboundSession) {
+                    // nur diese Session bekommt beim naechsten Frame einen Keyframe
+                    ((OutboundSession) outbound).requestKeyframe();
+                    return;
+                }
+                PlayerBinding binding = playerBindings.get(session.getId());
+                if (binding != null) {
+                    gameService.requestKeyframe(binding.game);
+                    return;
+                }
+                if (getSessionUserId(session) == null) {
+                    sendErrorMessage(session, "Invalid token or user not found");
+                    return;
+                }
+                Game game = LobbyService.getGameByLobby(getSessionLobbyCode(session));
+                if (game == null) {
+                    sendErrorMessage(session, "Game not found for lobby");
+                    return;
+                }
+                gameService.requestKeyframe(game);
             } else if ("quickPlay".equals(type)) {
-                // Extract token from session
-                String token = getTokenFromSession(session);
                 try {
-                    // Get user from token
-                    User user = userService.getUserByToken(token);
+                    // Get user from session
+                    User user = loadSessionUser(session);
 
                     if (user == null) {
                         sendErrorMessage(session, "Invalid token or user not found");
@@ -387,23 +583,24 @@ public class WebSocketHandler extends TextWebSocketHandler {
                     Lobby lobby = lobbyService.handleQuickPlay(user);
 
                     lobbyService.addLobbyCodeToUser(user, lobby.getId());
+                    setSessionLobbyCode(session, lobby.getId());
                     // Send success response with the lobby ID
                     ObjectNode response = mapper.createObjectNode();
                     response.put("type", "quickPlayResponse");
                     response.put("lobbyId", lobby.getId());
 
-                    session.sendMessage(new TextMessage(mapper.writeValueAsString(response)));
+                    synchronized (session) {
+                        session.sendMessage(new TextMessage(mapper.writeValueAsString(response)));
+                    }
                     logger.info("Created lobby for session: {}", session.getId());
                 } catch (Exception e) {
                     logger.error("Error creating lobby", e);
                     sendErrorMessage(session, "Failed to create lobby: " + e.getMessage());
                 }
             } else if ("soloLobby".equals(type)) {
-                // Extract token from session
-                String token = getTokenFromSession(session);
                 try {
-                    // Get user from token
-                    User user = userService.getUserByToken(token);
+                    // Get user from session
+                    User user = loadSessionUser(session);
 
                     if (user == null) {
                         sendErrorMessage(session, "Invalid token or user not found");
@@ -419,13 +616,16 @@ public class WebSocketHandler extends TextWebSocketHandler {
                     lobbyRepository.save(lobby);  // Or use a service method like lobbyService.updateLobby(lobby)
 
                     lobbyService.addLobbyCodeToUser(user, lobby.getId());
+                    setSessionLobbyCode(session, lobby.getId());
                     // Send success response with the lobby ID
                     ObjectNode response = mapper.createObjectNode();
                     response.put("type", "lobby_created");
                     response.put("lobbyId", lobby.getId());
                     response.put("solo", lobby.isSolo());
 
-                    session.sendMessage(new TextMessage(mapper.writeValueAsString(response)));
+                    synchronized (session) {
+                        session.sendMessage(new TextMessage(mapper.writeValueAsString(response)));
+                    }
                     logger.info("Created lobby for session: {}", session.getId());
 
 
@@ -446,20 +646,11 @@ public class WebSocketHandler extends TextWebSocketHandler {
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
-        // Find which user this session belongs to before removing it
-        Long userId = null;
-        
-        // Iterate through the userSessions map to find which user has this session
-        for (Map.Entry<Long, WebSocketSession> entry : userSessions.entrySet()) {
-            if (session.equals(entry.getValue())) {
-                userId = entry.getKey();
-                break;
-            }
-        }
+        // Find which user this session belongs to before removing it (null for a replaced session)
+        Long userId = sessionRegistry.getUserId(session.getId());
         
         if (userId != null) {
-            User user = userService.getUserById(userId);
-            if (!user.getIsBot()) {
+            if (!isSessionBot(session)) {
                 // Use the LobbyService to find the lobby
                 Lobby userLobby = lobbyService.findLobbyForUser(userId);
                 if (userLobby != null) {
@@ -467,7 +658,7 @@ public class WebSocketHandler extends TextWebSocketHandler {
                     if (game != null && (!game.isGameOver() || game.getWinnerRun())&& !game.getLobby().isSolo()) {
                         int alive = 0;
                         for (Snake snake : game.getSnakes()) {
-                            if (snake.getCoordinates().length > 0) {
+                            if (snake.isAlive()) {
                                 alive = alive + 1;
                             }
                         }
@@ -477,25 +668,7 @@ public class WebSocketHandler extends TextWebSocketHandler {
                         }
                         else {
                             // update statistic for exiting player while game continues
-                            user = userService.getUserById(userId);
-                            user.setPlayedGames(user.getPlayedGames() + 1);
-                            System.out.println("WinnerRun in afterConnectionClosed: " + game.getWinnerRun());
-                            System.out.println("Alive payers: " + game.getSnakes());
-                            user.setWinRate((double) user.getWins() / user.getPlayedGames());
-                            for (Snake snake : game.getSnakes()) {
-                                System.out.println(snake.getUserId());
-                                System.out.println(snake.getCoordinates().length);
-                                if (snake.getUserId().equals(userId)) {
-                                    if (user.getLengthPR() < snake.getCoordinates().length) {
-                                        user.setLengthPR(snake.getCoordinates().length);
-                                    }
-                                }
-                            }
-                            int points = 1 + (user.getWins() / 2) + (user.getKills() / 4);
-                            double newLevel = 5 * Math.sqrt((double) points / 4) - 1;
-                            user.setLevel(newLevel);
-                            userRepository.save(user);
-                            userRepository.flush();
+                            gameService.commitLeaverResult(game, userId);
                         }
                     }
 
@@ -523,15 +696,15 @@ public class WebSocketHandler extends TextWebSocketHandler {
                     if (onlyBots) {
                         for (Long participantId : participants) {
                             User participant = userService.getUserById(participantId);
-                            userRepository.delete(participant);
+                            userService.deleteUser(participant);
                         }
                         lobbyService.deleteLobby(userLobby.getId());
                     }
                     sendLobbyStateToUsers(userLobby.getId());
-                    logger.info("User {} removed from lobby {}", userId, userLobby.getId());
+                    logger.info("User {} removed from lobby {}", getSessionUsername(session), userLobby.getId());
 
                     // Also remove LobbyCode in User entity
-                    user = userService.getUserById(userId);
+                    User user = userService.getUserById(userId);
                     user.setLobbyCode(0);
 
                     // save updated user
@@ -540,11 +713,45 @@ public class WebSocketHandler extends TextWebSocketHandler {
 
             }
 
-            userSessions.entrySet().removeIf(entry -> entry.getValue().equals(session));
+            sessionRegistry.unregister(session);
+            playerBindings.remove(session.getId());
             logger.info("WebSocket connection closed: {} with status {}", session.getId(), status);
         }
     }
 
+    private synchronized ExecutorService getOutboundSender() {
+        if (outboundSender == null) {
+            outboundSender = Executors.newFixedThreadPool(senderThreads, daemonThreads("ws-sender-"));
+        }
+        return outboundSender;
+    }
+
+    private synchronized ExecutorService getOutboundCloser() {
+        if (outboundCloser == null) {
+            outboundCloser = Executors.newFixedThreadPool(2, daemonThreads("ws-closer-"));
+        }
+        return outboundCloser;
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (outboundSender != null) {
+            outboundSender.shutdownNow();
+        }
+        if (outboundCloser != null) {
+            outboundCloser.shutdownNow();
+        }
+    }
+
     @Override
     public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
         // This method is called when a transport error occurs
@@ -552,18 +759,39 @@ public class WebSocketHandler extends TextWebSocketHandler {
     }
 
     /**
-     * Extracts the authentication token from the WebSocket session
+     * @return the id of the user that authenticated in the handshake, null if the session did
+     * not pass the {@link TokenHandshakeInterceptor}
      */
-    private String getTokenFromSession(WebSocketSession session) {
-        String query = session.getUri().getQuery();
-        if (query != null && query.contains("token=")) {
-            String token = query.substring(query.indexOf("token=") + 6);
-            if (token.contains("&")) {
-                token = token.substring(0, token.indexOf("&"));
-            }
-            return token;
-        }
-        return null;
+    private Long getSessionUserId(WebSocketSession session) {
+        return (Long) session.getAttributes().get(TokenHandshakeInterceptor.USER_ID);
+    }
+
+    private String getSessionUsername(WebSocketSession session) {
+        return (String) session.getAttributes().get(TokenHandshakeInterceptor.USERNAME);
+    }
+
+    private boolean isSessionBot(WebSocketSession session) {
+        return Boolean.TRUE.equals(session.getAttributes().get(TokenHandshakeInterceptor.IS_BOT));
+    }
+
+    /**
+     * @return the lobby the user was in at the handshake or joined over this session, 0 for none
+     */
+    private long getSessionLobbyCode(WebSocketSession session) {
+        Object lobbyCode = session.getAttributes().get(TokenHandshakeInterceptor.LOBBY_CODE);
+        return lobbyCode == null ? 0 : (Long) lobbyCode;
+    }
+
+    private void setSessionLobbyCode(WebSocketSession session, long lobbyCode) {
+        session.getAttributes().put(TokenHandshakeInterceptor.LOBBY_CODE, lobbyCode);
+    }
+
+    /**
+     * Loads the user entity of the session, only for handlers that change the user.
+     */
+    private User loadSessionUser(WebSocketSession session) {
+        Long userId = getSessionUserId(session);
+        return userId == null ? null : userRepository.findById(userId).orElse(null);
     }
 
     /**
@@ -573,7 +801,9 @@ public class WebSocketHandler extends TextWebSocketHandler {
         ObjectNode response = mapper.createObjectNode();
         response.put("type", "error");
         response.put("message", errorMessage);
-        session.sendMessage(new TextMessage(mapper.writeValueAsString(response)));
+        synchronized (session) {
+            session.sendMessage(new TextMessage(mapper.writeValueAsString(response)));
+        }
         logger.warn("Sent error to client: {}", errorMessage);
     }
 
@@ -13,7 +13,4 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
   User findByToken(String token);
 
-  List<User> findTop10ByOrderByLevelDescWinRateDesc();
-
-    List<User> findAllByOrderByLevelDescWinRateDesc();
 }
@@ -0,0 +1,110 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.ItemKind;
+import ch.uzh.ifi.hase.soprafs24.entity.Board;
+import ch.uzh.ifi.hase.soprafs24.entity.Snake;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Binary encoding of a {@link GameFrame} for clients that negotiated the binary protocol
+ * (see {@code WebSocketHandler.BINARY_PROTOCOL}). All numbers are unsigned LEB128 varints,
+ * cells are sent as board index {@code y * 30 + x}, strings as varint byte length plus UTF-8.
+ * <pre>
+ * byte    1 = keyframe, 2 = delta
+ * varint  frame number, keyframe number, timestamp (remaining seconds)
+ * varint  number of snake sections, per section:
+ *         string username, byte 0 = whole body / 1 = head and tail,
+ *         varint cell count, cells (head first), for 1: varint cells dropped at the tail
+ * per item kind in {@link ItemKind} order:
+ *         varint count, cells of the added items, varint count, cells of the removed items
+ * varint  number of effect entries, per entry: string username, varint count, strings
+ * </pre>
+ * Not thread-safe, the buffer is reused; every game encodes on its own loop thread.
+ */
+public class BinaryFrameEncoder {
+
+    public static final byte KEYFRAME = 1;
+    public static final byte DELTA = 2;
+    public static final byte WHOLE_BODY = 0;
+    public static final byte HEAD_AND_TAIL = 1;
+
+    private byte[] buffer = new byte[1024];
+    private int size = 0;
+
+    /**
+     * @return the encoded frame in a new array that may be shared by all recipients
+     */
+    public byte[] encode(GameFrame frame) {
+        size = 0;
+        writeByte(frame.isKeyframe() ? KEYFRAME : DELTA);
+        writeVarint(frame.getFrame());
+        writeVarint(frame.getKeyframeNumber());
+        writeVarint(Math.max(0, frame.getTimestamp()));
+
+        writeVarint(frame.getSnakeCount());
+        for (int i = 0; i < frame.getSnakeCount(); i++) {
+            GameFrame.SnakeSection section = frame.getSnake(i);
+            writeString(section.getUsername());
+            writeByte(section.isWholeBody() ? WHOLE_BODY : HEAD_AND_TAIL);
+            writeCells(section.getCells());
+            if (!section.isWholeBody()) {
+                writeVarint(section.getTail());
+            }
+        }
+
+        for (ItemKind kind : ItemKind.values()) {
+            writeCells(frame.getAddedItems(kind));
+            writeCells(frame.getRemovedItems(kind));
+        }
+
+        writeVarint(frame.getEffectCount());
+        for (int i = 0; i < frame.getEffectCount(); i++) {
+            writeString(frame.getEffectUsername(i));
+            List<String> names = frame.getEffectNames(i);
+            writeVarint(names.size());
+            for (String name : names) {
+                writeString(name);
+            }
+        }
+        return Arrays.copyOf(buffer, size);
+    }
+
+    private void writeCells(GameFrame.CellList cells) {
+        writeVarint(cells.size());
+        for (int i = 0; i < cells.size(); i++) {
+            int cell = cells.get(i);
+            writeVarint(Board.index(Snake.cellX(cell), Snake.cellY(cell)));
+        }
+    }
+
+    private void writeString(String value) {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    private void writeVarint(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    private void writeByte(byte value) {
+        ensureCapacity(1);
+        buffer[size++] = value;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+}
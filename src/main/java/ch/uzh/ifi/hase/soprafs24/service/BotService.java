@@ -8,15 +8,12 @@ import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 
+import ch.uzh.ifi.hase.soprafs24.constant.Curve;
+import ch.uzh.ifi.hase.soprafs24.constant.Direction;
+import ch.uzh.ifi.hase.soprafs24.entity.Board;
 import ch.uzh.ifi.hase.soprafs24.entity.Game;
 import ch.uzh.ifi.hase.soprafs24.entity.Item;
-import ch.uzh.ifi.hase.soprafs24.entity.Powerdowns.Divider;
-import ch.uzh.ifi.hase.soprafs24.entity.Powerdowns.ReverseControl;
-import ch.uzh.ifi.hase.soprafs24.entity.Powerups.Cookie;
-import ch.uzh.ifi.hase.soprafs24.entity.Powerups.GoldenCookie;
-import ch.uzh.ifi.hase.soprafs24.entity.Powerups.Multiplier;
 import ch.uzh.ifi.hase.soprafs24.entity.Snake;
 
 @Service
@@ -25,23 +22,20 @@ public class BotService {
 
     private final GameService gameService;
 
-    private int HEIGHT = 24;
-    private int WIDTH = 29;
-    private String[] MOVES = new String[] { "UP", "DOWN", "LEFT", "RIGHT" };
+    private static final Direction[] MOVES = new Direction[] { Direction.UP, Direction.DOWN, Direction.LEFT, Direction.RIGHT };
 
     BotService(@Lazy GameService gameService) {
         this.gameService = gameService;
     }
 
     public void updateBot(Game game, Snake snake) {
-        int[][] coordinates = snake.getCoordinates();
-        List<String> availableMoves = new ArrayList<>();
-        List<String> cookieOrPowerUpMoves = new ArrayList<>();
-        for (String move : MOVES) {
-            if (availableMoves(snake, game, coordinates, move)) {
+        List<Direction> availableMoves = new ArrayList<>();
+        List<Direction> cookieOrPowerUpMoves = new ArrayList<>();
+        for (Direction move : MOVES) {
+            if (availableMoves(snake, game, move)) {
                 availableMoves.add(move);
             }
-            if (availablePowerUpOrCookieMoves(snake, game, coordinates, move)) {
+            if (availablePowerUpOrCookieMoves(snake, game, move)) {
                 cookieOrPowerUpMoves.add(move);
             }
 
@@ -49,14 +43,14 @@ public class BotService {
 
         if (availableMoves.size() > 0) {
             int randomIndex = (int) (Math.random() * availableMoves.size());
-            String randomMove = availableMoves.get(randomIndex);
+            Direction randomMove = availableMoves.get(randomIndex);
             double probabilityChangeMovement = (Math.random());
-            boolean straightPossible = availableMoves.contains(snake.getDirection()) && !isGoingToPickUpPowerDown(game, coordinates, snake.getDirection());
+            boolean straightPossible = availableMoves.contains(snake.getDirection()) && !isGoingToPickUpPowerDown(game, snake, snake.getDirection());
 
             if (!straightPossible) {
-                String oppositeCurve = ("RIGHTCURVE".equals(snake.getPreviousCurve())) ? "LEFTCURVE" : "RIGHTCURVE";
+                Curve oppositeCurve = (snake.getPreviousCurve() == Curve.RIGHTCURVE) ? Curve.LEFTCURVE : Curve.RIGHTCURVE;
 
-                String nextMove = mapCurveToDirection(oppositeCurve, snake.getDirection());
+                Direction nextMove = mapCurveToDirection(oppositeCurve, snake.getDirection());
                 if (availableMoves.contains(nextMove)) {
                     snake.setPreviousCurve(oppositeCurve);
                     snake.setDirection(nextMove);
@@ -71,7 +65,7 @@ public class BotService {
                                 snake.getDirection(),
                                 cookieOrPowerUpMoves.get(randomIndexCookie)));
                 snake.setDirection(cookieOrPowerUpMoves.get(randomIndexCookie));
-            } else if (probabilityChangeMovement < 0.15 && !isGoingToPickUpPowerDown(game, coordinates, randomMove)) {
+            } else if (probabilityChangeMovement < 0.15 && !isGoingToPickUpPowerDown(game, snake, randomMove)) {
                 snake.setPreviousCurve(
                         mapTwoDirectionsToCurve(
                             snake,
@@ -83,135 +77,42 @@ public class BotService {
         return;
     }
 
-    private boolean availableMoves(Snake snake, Game game, int[][] coordinates, String move) {
+    // Kopf und Belegung des Boards direkt lesen, ohne die Koordinaten der Schlange zu kopieren
+    private boolean availableMoves(Snake snake, Game game, Direction move) {
+        int x = snake.getHeadX() + move.getDx();
+        int y = snake.getHeadY() + move.getDy();
 
-        int[] newHead = newHeadHelper(move, coordinates);
-
-        if (newHead[0] < 0 || newHead[0] > WIDTH || newHead[1] < 0 || newHead[1] > HEIGHT) {
+        if (!Board.inBounds(x, y)) {
             return false;
         }
-
-        for (Snake otherSnake : game.getSnakes()) {
-            if (otherSnake.getCoordinates().length == 0) {
-                continue;
-            }
-            for (int i = 0; i < otherSnake.getCoordinates().length; i++) {
-                if (snake == otherSnake && i == 0) {
-                    continue;
-                }
-                if (Arrays.equals(newHead, otherSnake.getCoordinates()[i])) {
-                    return false;
-                }
-            }
-        }
-        return true;
+        // the new head is never the own head, so any snake segment on that cell blocks the move
+        return !game.getBoard().hasSnake(x, y);
     }
 
-    private boolean availablePowerUpOrCookieMoves(Snake snake, Game game, int[][] coordinates, String move) {
-        int[] newHead = newHeadHelper(move, coordinates);
-
-        if (newHead[0] < 0 || newHead[0] > WIDTH || newHead[1] < 0 || newHead[1] > HEIGHT) {
-            return false;
-        }
-        for (Item item : game.getItems()) {
-            if (item instanceof Cookie || item instanceof GoldenCookie || item instanceof Multiplier) { 
-                int[] cookiePosition = item.getPosition();
-
-                if (newHead[0] == cookiePosition[0] && newHead[1] == cookiePosition[1]) {
-                    return true;
-                }
-            }
-        }
-        return false;
+    private boolean availablePowerUpOrCookieMoves(Snake snake, Game game, Direction move) {
+        Item item = game.getBoard().itemAt(snake.getHeadX() + move.getDx(), snake.getHeadY() + move.getDy());
+        return item != null && !item.getKind().isPowerDown();
     }
 
-    private boolean isGoingToPickUpPowerDown(Game game, int[][] coordinates, String move) {
-        int[] newHead = newHeadHelper(move, coordinates);
-
-        for (Item item : game.getItems()) {
-            if ((item instanceof Divider) || (item instanceof ReverseControl)) {
-                int[][] powerupFourPositions;
-                if (item instanceof Divider) {
-                    powerupFourPositions = ((Divider) item).getFourPositions();
-                    for (int[] coordinate : powerupFourPositions) {
-                        if (newHead[0] == coordinate[0] && newHead[1] == coordinate[1]) {
-                            return true;
-                        }
-                    }
-
-                } else if (item instanceof ReverseControl) {
-                    powerupFourPositions = ((ReverseControl) item).getFourPositions();
-                    for (int[] coordinate : powerupFourPositions) {
-                        if (newHead[0] == coordinate[0] && newHead[1] == coordinate[1]) {
-                            return true;
-                        }
-                    }
-                }
-
-            }
-        }
-        return false;
+    private boolean isGoingToPickUpPowerDown(Game game, Snake snake, Direction move) {
+        // 2x2 Powerdowns sind auf allen vier Feldern eingetragen
+        Item item = game.getBoard().itemAt(snake.getHeadX() + move.getDx(), snake.getHeadY() + move.getDy());
+        return item != null && item.getKind().isPowerDown();
     }
 
-    private int[] newHeadHelper(String move, int[][] coordinates) {
-        int[] newHead;
-        if (move.equals("UP")) {
-            newHead = new int[] { coordinates[0][0], coordinates[0][1] - 1 };
-        } else if (move.equals("DOWN")) {
-            newHead = new int[] { coordinates[0][0], coordinates[0][1] + 1 };
-        } else if (move.equals("LEFT")) {
-            newHead = new int[] { coordinates[0][0] - 1, coordinates[0][1] };
-        } else if (move.equals("RIGHT")) {
-            newHead = new int[] { coordinates[0][0] + 1, coordinates[0][1] };
-        } else {
-            throw new IllegalArgumentException("Invalid direction: " + move);
-        }
-        return newHead;
-    }
-
-    private String mapTwoDirectionsToCurve(Snake snake, String direction1, String direction2) {
-        if (direction1.equals("UP") && direction2.equals("LEFT")) {
-            return "LEFTCURVE";
-        } else if (direction1.equals("UP") && direction2.equals("RIGHT")) {
-            return "RIGHTCURVE";
-        } else if (direction1.equals("DOWN") && direction2.equals("LEFT")) {
-            return "RIGHTCURVE";
-        } else if (direction1.equals("DOWN") && direction2.equals("RIGHT")) {
-            return "LEFTCURVE";
-        } else if (direction1.equals("LEFT") && direction2.equals("UP")) {
-            return "RIGHTCURVE";
-        } else if (direction1.equals("LEFT") && direction2.equals("DOWN")) {
-            return "LEFTCURVE";
-        } else if (direction1.equals("RIGHT") && direction2.equals("UP")) {
-            return "LEFTCURVE";
-        } else if (direction1.equals("RIGHT") && direction2.equals("DOWN")) {
-            return "RIGHTCURVE";
+    private Curve mapTwoDirectionsToCurve(Snake snake, Direction direction1, Direction direction2) {
+        if (direction2 == direction1.turnLeft()) {
+            return Curve.LEFTCURVE;
+        } else if (direction2 == direction1.turnRight()) {
+            return Curve.RIGHTCURVE;
         }
         return snake.getPreviousCurve();
     }
 
-    private String mapCurveToDirection(String curve, String currentDirection) {
-        if (curve.equals("LEFTCURVE")) {
-            if (currentDirection.equals("UP")) {
-                return "LEFT";
-            } else if (currentDirection.equals("DOWN")) {
-                return "RIGHT";
-            } else if (currentDirection.equals("LEFT")) {
-                return "DOWN";
-            } else if (currentDirection.equals("RIGHT")) {
-                return "UP";
-            }
-        } else if (curve.equals("RIGHTCURVE")) {
-            if (currentDirection.equals("UP")) {
-                return "RIGHT";
-            } else if (currentDirection.equals("DOWN")) {
-                return "LEFT";
-            } else if (currentDirection.equals("LEFT")) {
-                return "UP";
-            } else if (currentDirection.equals("RIGHT")) {
-                return "DOWN";
-            }
+    private Direction mapCurveToDirection(Curve curve, Direction currentDirection) {
+        if (curve == null || currentDirection == null) {
+            return null;
         }
-        return null;
+        return currentDirection.turn(curve);
     }
 }
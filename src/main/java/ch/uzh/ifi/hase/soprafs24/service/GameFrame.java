@@ -0,0 +1,175 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.ItemKind;
+import ch.uzh.ifi.hase.soprafs24.entity.Snake;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Content of one gameState frame, independent of how it is encoded (JSON or binary).
+ * Filled by {@link GameStateFrames}; the instance and its arrays are reused from frame to frame.
+ * Cells are packed with {@link Snake#packCell(int, int)}.
+ * <p>
+ * In a keyframe every snake has its whole body, {@link #getAddedItems(ItemKind)} holds all items
+ * and every snake has an effect entry. In a delta only what changed since the previous frame is set.
+ */
+public class GameFrame {
+
+    private boolean keyframe;
+    private long frame;
+    private long keyframeNumber;
+    private long timestamp;
+
+    private final List<SnakeSection> snakes = new ArrayList<>();
+    private int snakeCount = 0;
+    private final CellList[] addedItems = new CellList[ItemKind.COUNT];
+    private final CellList[] removedItems = new CellList[ItemKind.COUNT];
+    private final List<String> effectUsernames = new ArrayList<>();
+    private final List<List<String>> effectNames = new ArrayList<>();
+
+    public GameFrame() {
+        for (int i = 0; i < ItemKind.COUNT; i++) {
+            addedItems[i] = new CellList();
+            removedItems[i] = new CellList();
+        }
+    }
+
+    void reset(boolean keyframe, long frame, long keyframeNumber, long timestamp) {
+        this.keyframe = keyframe;
+        this.frame = frame;
+        this.keyframeNumber = keyframeNumber;
+        this.timestamp = timestamp;
+        snakeCount = 0;
+        for (int i = 0; i < ItemKind.COUNT; i++) {
+            addedItems[i].clear();
+            removedItems[i].clear();
+        }
+        effectUsernames.clear();
+        effectNames.clear();
+    }
+
+    SnakeSection addSnake(String username, boolean wholeBody) {
+        if (snakeCount == snakes.size()) {
+            snakes.add(new SnakeSection());
+        }
+        SnakeSection section = snakes.get(snakeCount++);
+        section.username = username;
+        section.wholeBody = wholeBody;
+        section.cells.clear();
+        section.tail = 0;
+        return section;
+    }
+
+    void addEffects(String username, List<String> names) {
+        effectUsernames.add(username);
+        effectNames.add(names);
+    }
+
+    public boolean isKeyframe() {
+        return keyframe;
+    }
+
+    public long getFrame() {
+        return frame;
+    }
+
+    public long getKeyframeNumber() {
+        return keyframeNumber;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getSnakeCount() {
+        return snakeCount;
+    }
+
+    public SnakeSection getSnake(int i) {
+        return snakes.get(i);
+    }
+
+    public CellList getAddedItems(ItemKind kind) {
+        return addedItems[kind.ordinal()];
+    }
+
+    public CellList getRemovedItems(ItemKind kind) {
+        return removedItems[kind.ordinal()];
+    }
+
+    public int getEffectCount() {
+        return effectUsernames.size();
+    }
+
+    public String getEffectUsername(int i) {
+        return effectUsernames.get(i);
+    }
+
+    public List<String> getEffectNames(int i) {
+        return effectNames.get(i);
+    }
+
+    /**
+     * Changes of one snake: either its whole body, or the new head cells (head first) plus the
+     * number of cells dropped at the tail. An empty whole body means the snake is gone.
+     */
+    public static final class SnakeSection {
+        private String username;
+        private boolean wholeBody;
+        private final CellList cells = new CellList();
+        private int tail;
+
+        public String getUsername() {
+            return username;
+        }
+
+        public boolean isWholeBody() {
+            return wholeBody;
+        }
+
+        /**
+         * @return the whole body or the new head cells, head first
+         */
+        public CellList getCells() {
+            return cells;
+        }
+
+        public int getTail() {
+            return tail;
+        }
+
+        void setTail(int tail) {
+            this.tail = tail;
+        }
+    }
+
+    /**
+     * Growable list of packed cells.
+     */
+    public static final class CellList {
+        private int[] cells = new int[16];
+        private int size = 0;
+
+        void add(int cell) {
+            if (size == cells.length) {
+                int[] grown = new int[size * 2];
+                System.arraycopy(cells, 0, grown, 0, size);
+                cells = grown;
+            }
+            cells[size++] = cell;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int get(int i) {
+            return cells[i];
+        }
+    }
+}
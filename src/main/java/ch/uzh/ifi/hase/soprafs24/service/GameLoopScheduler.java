@@ -0,0 +1,208 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.entity.Game;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Game Loop Scheduler
+ * Multiplexes the tick of every running game onto a small, fixed set of worker threads
+ * (one per core). Each game is pinned to the least loaded worker so that its ticks never
+ * overlap and the number of loop threads no longer grows with the number of games.
+ * Ticks are scheduled against absolute deadlines (start + n * period), so the time spent
+ * inside a tick does not push the following ones back. How late each tick fires is recorded
+ * per worker.
+ */
+@Service
+public class GameLoopScheduler {
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(Game.TICK_MILLIS);
+
+    private static final Logger logger = LoggerFactory.getLogger(GameLoopScheduler.class);
+
+    private final ScheduledExecutorService[] workers;
+    private final AtomicIntegerArray gamesPerWorker;
+    private final AtomicLongArray maxLatenessNanos;
+    private final AtomicLongArray lateTicks;
+    private final Map<Long, TickClock> loops = new ConcurrentHashMap<>();
+
+    public GameLoopScheduler() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public GameLoopScheduler(int workerCount) {
+        int size = Math.max(1, workerCount);
+        this.workers = new ScheduledExecutorService[size];
+        this.gamesPerWorker = new AtomicIntegerArray(size);
+        this.maxLatenessNanos = new AtomicLongArray(size);
+        this.lateTicks = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            String threadName = "game-loop-" + i;
+            workers[i] = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        logger.info("Game loop scheduler started with {} workers", size);
+    }
+
+    /**
+     * Registers the tick of a game on the least loaded worker. The tick fires every
+     * {@link Game#TICK_MILLIS} ms until {@link #cancel(Game)} is called.
+     */
+    public void schedule(Game game, Runnable tick) {
+        int worker = leastLoadedWorker();
+        gamesPerWorker.incrementAndGet(worker);
+        TickClock clock = new TickClock(game, tick, worker, System.nanoTime());
+        loops.put(game.getGameId(), clock);
+        clock.scheduleNext();
+        logger.info("Game {} scheduled on worker {} (games per worker: {})", game.getGameId(), worker,
+                gamesPerWorker);
+    }
+
+    /**
+     * Stops the tick of a game and releases its slot on the worker.
+     */
+    public void cancel(Game game) {
+        TickClock clock = loops.remove(game.getGameId());
+        if (clock == null) {
+            return;
+        }
+        clock.stop();
+        gamesPerWorker.decrementAndGet(clock.worker);
+    }
+
+    /**
+     * @return number of games currently carried by each worker, indexed by worker
+     */
+    public int[] getGamesPerWorker() {
+        int[] counts = new int[gamesPerWorker.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = gamesPerWorker.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * @return the largest delay between a tick's deadline and its actual start, per worker
+     */
+    public double[] getMaxTickLatenessMillis() {
+        double[] lateness = new double[maxLatenessNanos.length()];
+        for (int i = 0; i < lateness.length; i++) {
+            lateness[i] = maxLatenessNanos.get(i) / 1_000_000.0;
+        }
+        return lateness;
+    }
+
+    /**
+     * @return number of ticks per worker that started more than a whole period after their deadline
+     */
+    public long[] getLateTicks() {
+        long[] counts = new long[lateTicks.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = lateTicks.get(i);
+        }
+        return counts;
+    }
+
+    public int getWorkerCount() {
+        return workers.length;
+    }
+
+    private int leastLoadedWorker() {
+        int best = 0;
+        for (int i = 1; i < workers.length; i++) {
+            if (gamesPerWorker.get(i) < gamesPerWorker.get(best)) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private void recordLateness(int worker, long latenessNanos) {
+        maxLatenessNanos.accumulateAndGet(worker, latenessNanos, Math::max);
+        if (latenessNanos > TICK_NANOS) {
+            lateTicks.incrementAndGet(worker);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ScheduledExecutorService worker : workers) {
+            worker.shutdownNow();
+        }
+    }
+
+    /**
+     * Fixed-rate clock of one game. Tick n is due at origin + n * period; when a worker
+     * falls behind, the missed ticks run back to back so a match still lasts its full wall time.
+     */
+    private final class TickClock implements Runnable {
+        private final Game game;
+        private final Runnable tick;
+        private final int worker;
+        private final long origin;
+        private long tickIndex = 0;
+        private volatile boolean stopped = false;
+        private volatile ScheduledFuture<?> pending;
+
+        private TickClock(Game game, Runnable tick, int worker, long origin) {
+            this.game = game;
+            this.tick = tick;
+            this.worker = worker;
+            this.origin = origin;
+        }
+
+        @Override
+        public void run() {
+            if (stopped) {
+                return;
+            }
+            recordLateness(worker, System.nanoTime() - deadline(tickIndex));
+            try {
+                tick.run();
+            }
+            catch (RuntimeException e) {
+                // a failing tick must not take down the other games on this worker
+                logger.error("Tick of game {} failed, stopping its loop", game.getGameId(), e);
+                cancel(game);
+                return;
+            }
+            tickIndex++;
+            scheduleNext();
+        }
+
+        private void scheduleNext() {
+            if (stopped) {
+                return;
+            }
+            long delay = deadline(tickIndex) - System.nanoTime();
+            pending = workers[worker].schedule(this, Math.max(0, delay), TimeUnit.NANOSECONDS);
+        }
+
+        private long deadline(long index) {
+            return origin + index * TICK_NANOS;
+        }
+
+        private void stop() {
+            stopped = true;
+            ScheduledFuture<?> future = pending;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package ch.uzh.ifi.hase.soprafs24.service;
 
+import ch.uzh.ifi.hase.soprafs24.constant.Direction;
+import ch.uzh.ifi.hase.soprafs24.constant.ItemKind;
 import ch.uzh.ifi.hase.soprafs24.entity.*;
 import ch.uzh.ifi.hase.soprafs24.entity.Powerdowns.Divider;
 import ch.uzh.ifi.hase.soprafs24.entity.Powerdowns.ReverseControl;
@@ -15,11 +17,13 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static ch.uzh.ifi.hase.soprafs24.service.LobbyService.putGameToLobby;
 
@@ -29,24 +33,38 @@ public class GameService {
 
     private final LobbyRepository lobbyRepository;
     private final UserRepository userRepository;
-    private final UserService userService;
     private final SnakeService snakeService;
     private final BotService botService;
+    private final GameLoopScheduler gameLoopScheduler;
+    // Spielergebnisse aller Teilnehmer in einer Transaktion, auch wenn endGame aus der Game-Loop kommt
+    private final TransactionTemplate transactionTemplate;
+    private final LeaderboardIndex leaderboardIndex;
     private final ObjectMapper mapper = new ObjectMapper();
+    // was die Clients pro laufender Partie zuletzt bekommen haben (Basis der Delta-Frames)
+    private final Map<Game, GameStateFrames> stateFrames = new ConcurrentHashMap<>();
     private static final Logger logger = LoggerFactory.getLogger(GameService.class);
 
+    // Effektnamen fuer den Client ("GoldenCookie5", "ReverseControl3", "Multiplier9.8"), vorberechnet pro Zaehlerstand
+    private static final String[] GOLDEN_COOKIE_NAMES = counterNames("GoldenCookie", GoldenCookie.GROWTH);
+    private static final String[] REVERSE_CONTROL_NAMES = counterNames("ReverseControl", ReverseControl.TURNS);
+    private static final String[] MULTIPLIER_NAMES = multiplierNames();
+
     // Replace direct WebSocketHandler dependency with ApplicationContext
     private final ApplicationContext applicationContext;
 
     @Autowired
     public GameService(LobbyRepository lobbyRepository, UserRepository userRepository,
-                       UserService userService, ApplicationContext applicationContext, SnakeService snakeService, BotService botService) {
+                       ApplicationContext applicationContext, SnakeService snakeService, BotService botService,
+                       GameLoopScheduler gameLoopScheduler, PlatformTransactionManager transactionManager,
+                       LeaderboardIndex leaderboardIndex) {
         this.lobbyRepository = lobbyRepository;
         this.userRepository = userRepository;
-        this.userService = userService;
         this.applicationContext = applicationContext;
         this.snakeService = snakeService;
         this.botService = botService;
+        this.gameLoopScheduler = gameLoopScheduler;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.leaderboardIndex = leaderboardIndex;
     }
 
     // Add a method to get WebSocketHandler lazily when needed
@@ -78,7 +96,8 @@ public class GameService {
 
         // Log player IDs to debug
         logger.info("Creating game with {} players", playersId.size());
-        addSnakesToBoard(game, playersId);
+        game.setPlayers(loadPlayers(playersId));
+        addSnakesToBoard(game);
         // new function to spawn grid with probability
         spawnGameGrid(game, cookieSpawnRate, powerupsWanted);
         return game;
@@ -94,11 +113,30 @@ public class GameService {
 
     }
 
-    private void addSnakesToBoard(Game game, List<Long> playersId) {
+    /**
+     * Loads all participants with one query and builds the profile table of the game, in lobby order.
+     */
+    private List<PlayerProfile> loadPlayers(List<Long> playersId) {
+        Map<Long, User> users = new HashMap<>();
+        for (User user : userRepository.findAllById(playersId)) {
+            users.put(user.getId(), user);
+        }
+        List<PlayerProfile> players = new ArrayList<>(playersId.size());
         for (Long playerId : playersId) {
-            logger.info("Adding snake for player: {}", playerId);
+            User user = users.get(playerId);
+            if (user == null) {
+                throw new IllegalArgumentException("User not found with ID: " + playerId);
+            }
+            players.add(new PlayerProfile(players.size(), user));
+        }
+        return players;
+    }
 
-            int index = playersId.indexOf(playerId);
+    private void addSnakesToBoard(Game game) {
+        for (PlayerProfile player : game.getPlayers()) {
+            logger.info("Adding snake for player: {}", player.getUserId());
+
+            int index = player.getIndex();
 
             int[][] coordinate;
             coordinate = switch (index % 4) {
@@ -108,243 +146,171 @@ public class GameService {
                 case 3 -> new int[][]{{4, 20}, {4, 21}, {4, 22}};
                 default -> new int[][]{{4, 4}, {3, 4}, {2, 4}}; // Default case
             };
-            String direction = switch (index % 4) {
-                case 0 -> "RIGHT";
-                case 1 -> "LEFT";
-                case 2 -> "DOWN";
-                case 3 -> "UP";
-                default -> "RIGHT";
+            Direction direction = switch (index % 4) {
+                case 0 -> Direction.RIGHT;
+                case 1 -> Direction.LEFT;
+                case 2 -> Direction.DOWN;
+                case 3 -> Direction.UP;
+                default -> Direction.RIGHT;
             };
 
 
             Snake snake = new Snake();
-            User user = userService.getUserById(playerId);
-            boolean isBot = user.getIsBot();
             snake.setGame(game);
-            snake.setUserId(playerId);
-            snake.setUsername(userService.getUserById(playerId).getUsername());
+            snake.setPlayerIndex(index);
+            snake.setUserId(player.getUserId());
+            snake.setUsername(player.getUsername());
             snake.setDirection(direction);
             snake.setCoordinates(coordinate);
-            snake.setIsBot(isBot);
-            snake.setLength(2);
-            snake.setHead(new int[]{2, 2});
-            snake.setTail(new int[]{2, 1});
+            snake.setIsBot(player.getIsBot());
             game.addSnake(snake);
         }
     }
 
     public void start(Game game) {
-        new Thread(() -> { // Startet die Game-Loop in einem eigenen Thread
+        // Die Game-Loop läuft nicht mehr in einem eigenen Thread, sondern als Tick auf dem gemeinsamen Scheduler
+        gameLoopScheduler.schedule(game, new GameLoop(game));
+    }
+
+    /**
+     * Tick-getriebene Game-Loop: Countdown -> Spiel -> Winner Run -> Spielende.
+     * Wird alle {@link Game#TICK_MILLIS} ms vom Scheduler aufgerufen.
+     */
+    private final class GameLoop implements Runnable {
+        private static final int COUNTDOWN_SECONDS = 5;
+        private static final int WINNER_RUN_TICKS = 15;
+        private final int ticksPerSecond = (int) (1000 / Game.TICK_MILLIS);
+
+        private final Game game;
+        private LoopPhase phase = LoopPhase.COUNTDOWN;
+        private int phaseTicks = 0;
+
+        private GameLoop(Game game) {
+            this.game = game;
+        }
+
+        @Override
+        public void run() {
             try {
-                startCountdown(game, 5);
-            }
-            catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-            // Game loop
-            while (!game.isGameOver()) {
-                updateGameState(game);
-                game.setTimestamp(game.getTimestamp() - 0.20f);// Aktualisiert den Spielzustand (Bewegungen, Kollisionsprüfung)
-                try {
-                    broadcastGameState(game); // Sendet Spielzustand an alle WebSocket-Clients
-                }
-                catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-                try {
-                    Thread.sleep(200); // Wartezeit für den nächsten Loop (z. B. 100ms pro Frame)
-                }
-                catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
+                switch (phase) {
+                    case COUNTDOWN -> countdownTick();
+                    case RUNNING -> runningTick();
+                    case WINNER_RUN -> winnerRunTick();
+                    case ENDING -> finish();
                 }
             }
-            if (!game.getLobby().isSolo() && game.getTimestamp()>0){game.setWinnerRun(true);}
-
-            if (game.getWinnerRun() && !game.getLobby().isSolo()){
-                for(int i = 0; i < 15; i++) {
-                    updateGameState(game);
-                    game.setTimestamp(game.getTimestamp() - 0.20f);// Aktualisiert den Spielzustand (Bewegungen, Kollisionsprüfung)
-                    try {
-                        broadcastGameState(game); // Sendet Spielzustand an alle WebSocket-Clients
-                    }
-                    catch (IOException e) {
-                        throw new RuntimeException(e);
-                    }
-                    try {
-                        Thread.sleep(200); // Wartezeit für den nächsten Loop (z. B. 100ms pro Frame)
-                    }
-                    catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        break;
-                    }
-                }
-                game.setWinnerRun(false);
-                System.out.println("Winner run is set to false in start: " + game.getWinnerRun());
-            }
-            if (game.getLobby().isSolo()){game.setWinnerRun(false);}
-            try {
-                endGame(game);
-            } // send winner to FE etc//
             catch (IOException e) {
                 throw new RuntimeException(e);
             }
-        }).start();
-    }
-
-    private void broadcastGameState(Game game) throws IOException {
-
-        logger.info("Broadcasting game state for game: {}", game.getGameId());
-        ObjectNode message = mapper.createObjectNode();
-        message.put("type", "gameState");
-        message.put("timestamp", Math.round(game.getTimestamp()));
-        // Map mit Username als Key und Snake-Informationen als Value erstellen
-        Map<String, Object> snakesDictionary = new HashMap<>();
-        for (Snake snake : game.getSnakes()) {
-            String username = snake.getUsername(); // Benutzername als Key
-            snakesDictionary.put(username, snake.getCoordinates());
-        }
-        // Füge die strukturierte Map dem JSON-Objekt hinzu
-        message.set("snakes", mapper.valueToTree(snakesDictionary));
-        // Extrahiere die Cookies aus der Items-Liste (alle Items mit type "cookie")
-        List<int[]> cookiePositions = new ArrayList<>();
-        for (Item item : game.getItems()) {
-            if ("cookie".equals(item.getType())) { // Prüfen, ob Item-Typ "cookie" ist
-                cookiePositions.add(item.getPosition()); // Position hinzufügen
-            }
         }
-        // Füge die Cookie-Positionen zu den JSON-Daten hinzu
-        message.set("cookies", mapper.valueToTree(cookiePositions));
 
-        // Extrahiere die Golden Cookies aus der Items-Liste
-        List<int[]> goldenCookiePositions = new ArrayList<>();
-        for (Item item : game.getItems()) {
-            if ("powerup".equals(item.getType()) && item instanceof GoldenCookie) {
-                goldenCookiePositions.add(item.getPosition());
+        private void countdownTick() throws IOException {
+            if (phaseTicks % ticksPerSecond == 0) {
+                broadcastCountdown(game, COUNTDOWN_SECONDS - phaseTicks / ticksPerSecond);
+            }
+            phaseTicks++;
+            if (phaseTicks == COUNTDOWN_SECONDS * ticksPerSecond) {
+                phase = LoopPhase.RUNNING;
             }
         }
-        // Füge die Golden Cookie-Positionen zu den JSON-Daten hinzu
-        message.set("goldenCookies", mapper.valueToTree(goldenCookiePositions));
 
-        // Extrahiere die ReverseControl-Items aus der Items-Liste
-        List<int[]> reverseControlPositions = new ArrayList<>();
-        for (Item item : game.getItems()) {
-            if ("powerup".equals(item.getType()) && item instanceof ReverseControl) {
-                reverseControlPositions.add(item.getPosition());
+        private void runningTick() throws IOException {
+            if (!game.isGameOver()) {
+                advance();
+                return;
+            }
+            if (!game.getLobby().isSolo() && game.getRemainingTicks() > 0) {
+                game.setWinnerRun(true);
+                phase = LoopPhase.WINNER_RUN;
+                phaseTicks = 0;
+                winnerRunTick();
+                return;
             }
+            game.setWinnerRun(false);
+            finish();
         }
-        // Füge die ReverseControl-Positionen zu den JSON-Daten hinzu
-        message.set("reverseControls", mapper.valueToTree(reverseControlPositions));
 
-        // Extrahiere die Divider-Items aus der Items-Liste
-        List<int[]> dividerPositions = new ArrayList<>();
-        for (Item item : game.getItems()) {
-            if ("powerup".equals(item.getType()) && item instanceof Divider) {
-                dividerPositions.add(item.getPosition());
+        private void winnerRunTick() throws IOException {
+            advance();
+            phaseTicks++;
+            if (phaseTicks == WINNER_RUN_TICKS) {
+                game.setWinnerRun(false);
+                phase = LoopPhase.ENDING;
             }
         }
-        // Füge die Divider-Positionen zu den JSON-Daten hinzu
-        message.set("dividers", mapper.valueToTree(dividerPositions));
 
-        List<int[]> multiplierPositions = new ArrayList<>();
-        for (Item item : game.getItems()) {
-            if ("powerup".equals(item.getType()) && item instanceof Multiplier) {
-                multiplierPositions.add(item.getPosition());
-            }
+        private void advance() throws IOException {
+            updateGameState(game); // Aktualisiert den Spielzustand (Bewegungen, Kollisionsprüfung)
+            game.advanceTick();
+            broadcastGameState(game); // Sendet Spielzustand an alle WebSocket-Clients
         }
-        // Füge die Divider-Positionen zu den JSON-Daten hinzu
-        message.set("multipliers", mapper.valueToTree(multiplierPositions));
 
-        // Map mit Username als Key und SnakeEffect-Informationen als Value erstellen
-        Map<String, Object> effectDictionary = new HashMap<>();
-        for (Snake snake : game.getSnakes()) {
-            String username = snake.getUsername(); // Benutzername als Key
-            List<String> effectNames = new ArrayList<>();
-
-            // Für jeden Effekt den Klassennamen extrahieren
-            for (Item effect : snake.getEffects()) {
-                // getSimpleName() gibt nur den Klassennamen ohne Package zurück
-                if (effect instanceof GoldenCookie) {
-                    effectNames.add(effect.getClass().getSimpleName()+((GoldenCookie) effect).getCount());
-                }
-                else if (effect instanceof ReverseControl) {
-                    effectNames.add(effect.getClass().getSimpleName()+((ReverseControl) effect).getTimer());
-                }
-                else if (effect instanceof Multiplier) {
-                    effectNames.add(effect.getClass().getSimpleName()+(float)(Math.round((10-(((Multiplier) effect).getStart()-game.getTimestamp()))*100)/100.0));
-                }
-                else if (effect instanceof Divider){
-                    effectNames.add(effect.getClass().getSimpleName());
-                }
-            }
+        private void finish() throws IOException {
+            gameLoopScheduler.cancel(game);
+            stateFrames.remove(game);
+            endGame(game); // send winner to FE etc
+        }
+    }
 
-            // Leere Liste oder Liste mit Effektnamen zum Dictionary hinzufügen
-            effectDictionary.put(username, effectNames);
+    private enum LoopPhase {
+        COUNTDOWN, RUNNING, WINNER_RUN, ENDING
+    }
 
-        }
-        // Füge die strukturierte Map dem JSON-Objekt hinzu
-        message.set("effects", mapper.valueToTree(effectDictionary));
+    /**
+     * Sendet den Spielzustand: alle {@link GameStateFrames#KEYFRAME_INTERVAL} Frames (und auf Anfrage)
+     * den ganzen Zustand als "gameState", dazwischen nur die Aenderungen als "gameStateDelta".
+     * Ein Client, der ein Delta verpasst hat, bekommt allein einen Keyframe.
+     * Der Frame wird direkt gestreamt, Clients mit dem Binaerprotokoll bekommen ihn binaer kodiert.
+     */
+    private void broadcastGameState(Game game) throws IOException {
 
+        logger.info("Broadcasting game state for game: {}", game.getGameId());
+        GameStateFrames frames = framesOf(game);
+        frames.nextFrame(game,
+                snake -> snake.hasNoEffects() ? Collections.emptyList() : effectNames(snake, game.getTick()));
 
         // Get WebSocketHandler lazily only when needed
         WebSocketHandler webSocketHandler = getWebSocketHandler();
-        webSocketHandler.broadcastToLobby(game.getLobby().getId(), message);
-//
-//        for (Long playerId : game.getLobby().getParticipantIds()) {
-//            WebSocketSession session = webSocketHandler.getSessionByUserId(playerId);
-//            try {
-//                if (session != null && session.isOpen()) {
-//                    session.sendMessage(new TextMessage(message.toString()));
-//                }
-//            } catch (IOException e) {
-//                logger.error("Error sending game update to user {}", playerId, e);
-//            }
-//        }
+        // ein langsamer Client, der ein Delta verpasst hat, bekommt allein den ganzen Zustand
+        webSocketHandler.broadcastToLobby(game.getLobby().getId(), frames::encodeJson, frames::encodeBinary,
+                frames::encodeKeyframeJson, frames::encodeKeyframeBinary);
+    }
+
+    private GameStateFrames framesOf(Game game) {
+        return stateFrames.computeIfAbsent(game, key -> new GameStateFrames());
+    }
+
+    /**
+     * Lets the next gameState broadcast of the game be a full keyframe, e.g. after a client
+     * missed a frame or reconnected.
+     */
+    public void requestKeyframe(Game game) {
+        GameStateFrames frames = stateFrames.get(game);
+        if (frames != null) {
+            frames.requestKeyframe();
+        }
     }
 
     public void endGame(Game game) throws IOException {
         game.setWinnerRun(false);
-        System.out.println("WinnerRun is set to false in endGame: " + game.getWinnerRun());
-        rankRemainingPlayers(game);
+        logger.debug("endGame called for game {} with winnerRun {}", game.getGameId(), game.getWinnerRun());
+        Map<Long, Integer> finalLengths = rankRemainingPlayers(game);
+        // Kills und Laengen-PR der Partie muessen vor der Level-Berechnung in der Datenbank sein
+        snakeService.flushStats();
 
         // Check if this is a solo lobby
         Lobby lobby = game.getLobby();
         boolean isSoloLobby = lobby.isSolo();
 
-        // update winning stats
-        String winnerName = game.getLeaderboard().get(0);
-        if (winnerName != null) {
-            User winner = userRepository.findByUsername(winnerName);
-            if (!isSoloLobby) {
-                logger.info("User won before: {}", winner.getWins());
-                winner.setWins(winner.getWins()+1);
-                userRepository.save(winner);
-                logger.info("User won after: {}", winner.getWins());
-            }
-            logger.info("User {} won the game!", winnerName);
-        }
-        //update level stats + playedGames + winRate
-        for (Long playerId : game.getLobby().getParticipantIds()) {
-            Optional<User> currentUser = userRepository.findById(playerId);
-            if (currentUser.isPresent()) {
-                User user = currentUser.get();
-                if (!isSoloLobby) {
-                    user.setPlayedGames(user.getPlayedGames()+1);
-                    System.out.println("Games are updated in endGame: " + user.getPlayedGames());
-                    int points = 1 + (user.getWins() / 2) + (user.getKills() / 4);
-                    double newLevel = 5 * Math.sqrt((double)points/4) - 1;
-                    user.setLevel(newLevel);
-                    // update winRate
-                    double newWinRate = (double) user.getWins() / user.getPlayedGames();
-                    user.setWinRate(newWinRate);
-                    userRepository.save(user);
-                    userRepository.flush();
-                }
-                logger.info("User {} reached level {}!", user.getUsername(), user.getLevel());
-            }
-            else {
-                logger.error("User {} not found!", playerId);
-            }
+        // der Gewinner kommt aus der Schlange, die zuletzt ins Leaderboard eingetragen wurde
+        Long winnerId = game.getWinnerId();
+        if (!isSoloLobby) {
+            List<Long> playerIds = game.getLobby().getParticipantIds();
+            List<User> players = transactionTemplate.execute(status -> commitGameResult(playerIds, winnerId, finalLengths));
+            leaderboardIndex.updateAll(players);
+        }
+        if (winnerId != null) {
+            logger.info("User {} won the game!", winnerId);
         }
         List<String> leaderboard = game.getLeaderboard();
         logger.info("Ending game: {}", game.getGameId());
@@ -353,14 +319,16 @@ public class GameService {
         message.put("rank", mapper.valueToTree(leaderboard));
         message.put("reason", "Last survivor");
         WebSocketHandler webSocketHandler = getWebSocketHandler();
+        // Moves nach dem Spielende duerfen nicht mehr an diese Partie gehen
+        webSocketHandler.unbindPlayers(game);
         webSocketHandler.broadcastToLobby(game.getLobby().getId(), message);
-        System.out.println("endGame has WinnerRun at the end: " + game.getWinnerRun());
+        logger.debug("Game {} ended with winnerRun {}", game.getGameId(), game.getWinnerRun());
     }
 
     private void updateGameState(Game game) {
         List<Snake> aliveSnakes = new ArrayList<>();
         for (Snake snake : game.getSnakes()) {
-            if (snake.getCoordinates().length == 0) {
+            if (!snake.isAlive()) {
                 continue; // already dead
             }
             aliveSnakes.add(snake);
@@ -376,9 +344,9 @@ public class GameService {
                 logger.info("Collision detected for snake: {}", snake.getUserId());
                 spawnCookiesOnDeath(snake, game);
                 snake.setCoordinates(new int[0][0]); // Set coordinates to empty to mark as dead
-                game.addLeaderboardEntry(snake.getUsername());
+                game.addLeaderboardEntry(snake);
             }
-            if (snake.getCoordinates().length != 0) {
+            if (snake.isAlive()) {
                 checkPowerupCollision(snake);
             }
         }
@@ -398,74 +366,29 @@ public class GameService {
 
     private void checkPowerupCollision(Snake snake) {
         // Position des Kopfes der Schlange abrufen
-        int[] head = snake.getCoordinates()[0]; // Der Kopf ist der erste Punkt im Koordinatenarray
-
-        // Durchlaufen der Items im Spiel (Game)
-        for (Item item : snake.getGame().getItems()) {
-            // Prüfen, ob das aktuelle Item vom Typ "cookie" ist
-            if ("powerup".equals(item.getType())) {
-                int[] powerupPosition = item.getPosition(); // Cookie-Position abrufen
-
-                // könnte fourCoordinate Powerdown sein
-                if (item instanceof Divider) {
-                    int[][] powerupFourPositions = ((Divider) item).getFourPositions();
-                    // Prüfe Kollision mit allen vier Positionen des Dividers
-                    for (int[] powerupFourPosition : powerupFourPositions) {
-                        if (head[0] == powerupFourPosition[0] && head[1] == powerupFourPosition[1]) {
-                            // Kollision -> Entfernt den Divider aus dem Spiel und wendet den Effekt an
-                            item.applyEffect(snake);
-                            snake.getGame().getItems().remove(item);
-                            return; // Eine Kollision wurde festgestellt
-                        }
-                    }
-                }
-                if (item instanceof ReverseControl) {
-                    int[][] powerupFourPositions = ((ReverseControl) item).getFourPositions();
-                    // Prüfe Kollision mit allen vier Positionen des Dividers
-                    for (int[] powerupFourPosition : powerupFourPositions) {
-                        if (head[0] == powerupFourPosition[0] && head[1] == powerupFourPosition[1]) {
-                            // Kollision -> Entfernt den Divider aus dem Spiel und wendet den Effekt an
-                            for (Item effect : snake.getEffects()) {
-                                if (effect instanceof ReverseControl){
-                                    snake.removeEffect(effect);
-                                    break;
-                                }
-                            }
-                            item.applyEffect(snake);
-                            snake.getGame().getItems().remove(item);
-                            return; // Eine Kollision wurde festgestellt
-                        }
-                    }
-                }
+        Game game = snake.getGame();
 
-
-                // Prüfen, ob die Kopfposition mit der Cookie-Position übereinstimmt
-                if (head[0] == powerupPosition[0] && head[1] == powerupPosition[1]) {
-                    // Kollision -> Entfernt den Cookie aus dem Spiel
-                    item.applyEffect(snake);
-                    snake.getGame().getItems().remove(item);
-                    return; // Eine Kollision wurde festgestellt
-                }
-            }
+        // Item auf dem Feld des Kopfes nachschlagen (2x2 Powerdowns sind auf allen vier Feldern eingetragen)
+        Item item = game.getBoard().itemAt(snake.getHeadX(), snake.getHeadY());
+        if (item == null || !item.getKind().isPowerup()) {
+            return; // Keine Kollision gefunden
         }
-
-        // Keine Kollision gefunden
-        return;
+        // Kollision -> Entfernt das Item aus dem Spiel und wendet den Effekt an
+        // (ein neues ReverseControl setzt ein aktives zurück)
+        item.applyEffect(snake);
+        game.removeItem(item);
     }
 
     private void spawnCookiesOnDeath(Snake snake, Game game) {
         // Spawn cookies at the coordinates of the dead snake
-        int[][] coordinates = snake.getCoordinates();
-        for (int[] coordinate : coordinates) {
-            boolean alreadyInGame = false;
-            for (Item itemAlreadyInGame : game.getItems()) {
-                if (Arrays.equals(itemAlreadyInGame.getPosition(), coordinate)) {
-                    alreadyInGame = true;
-                    break;
-                }
-            }
-            if (!alreadyInGame) {
-                Item item = new Cookie(coordinate, "cookie");
+        Board board = game.getBoard();
+        for (int i = 0; i < snake.getLength(); i++) {
+            int cell = snake.cellAt(i);
+            int x = Snake.cellX(cell);
+            int y = Snake.cellY(cell);
+            // kein Cookie ausserhalb des Spielfelds oder auf einem bereits belegten Item-Feld
+            if (Board.inBounds(x, y) && !board.hasItem(x, y)) {
+                Item item = new Cookie(new int[]{x, y}, "cookie");
                 game.addItem(item);
             }
         }
@@ -474,24 +397,19 @@ public class GameService {
     private void spawnItem(Game game) {
         int[] freeCoord = findFreeCoordinate(game);
         // spawn cookie on all ticks
-        if (freeCoord != null) {
-            Item item = new Cookie(freeCoord, "cookie");
-            game.addItem(item);
+        if (freeCoord == null) {
+            return; // Spielfeld ist voll, auch fuer Powerups ist kein Platz
         }
-        // spawn powerup to a certain probability
-        List<int[]> usedCoordinates = findUsedCoordinates(game);
+        Item item = new Cookie(freeCoord, "cookie");
+        game.addItem(item);
 
-        int[] freeCord = findFreeCoordinate(game);
-        int[] posi = freeCord;
-        while (posi != null) {
-            if (posi != freeCord) {break;}
-            posi = findFourAdjacentCoordinates(game);
-        }
+        // spawn powerup to a certain probability, the free cell is only drawn when one is spawned
         if (game.getPowerupsWanted()){
             Random random1 = new Random();
             // spawn golden Cookie
             double chance = random1.nextDouble();
             if (chance < 0.02) {
+                int[] freeCord = findFreeCoordinate(game);
                 if (freeCord != null) {
                     Item itemP = new GoldenCookie(freeCord, "powerup");
                     game.addItem(itemP);
@@ -499,6 +417,7 @@ public class GameService {
             }
             // spawn Multiplier
             else if (chance < 0.04) {
+                int[] freeCord = findFreeCoordinate(game);
                 if (freeCord != null) {
                     Item itemP = new Multiplier(freeCord, "powerup");
                     game.addItem(itemP);
@@ -506,226 +425,146 @@ public class GameService {
             }
             // spawn Reverse Control
             else if (chance < 0.06) {
-                if (posi != null && posi != freeCoord) {
+                int[] posi = findFourAdjacentCoordinates(game);
+                if (posi != null) {
                     Item itemP = new ReverseControl(posi, "powerup");
                     game.addItem(itemP);
                 }
             }
             // spawn Divider
             else if (chance < 0.08) {
-                if (posi != null && posi != freeCoord) {
+                int[] posi = findFourAdjacentCoordinates(game);
+                if (posi != null) {
                     Item itemP = new Divider(posi, "powerup");
                     game.addItem(itemP);
                 }
             }
         }
-        return;
     }
+
+    /**
+     * Draws a uniformly random free cell from the board's free-cell pool.
+     *
+     * @return the coordinate, or null if no cell on the board is free
+     */
     private int[] findFreeCoordinate(Game game) {
-        Random random = new Random();
-        List<int[]> usedCoordinates = findUsedCoordinates(game);
-        int maxAttempts = 100; // Maximale Anzahl an Versuchen
-
-        for (int i = 0; i < maxAttempts; i++) {
-            // Zufällige Koordinate generieren
-            int x = random.nextInt(30);
-            int y = random.nextInt(25);
-            int[] newCoord = new int[]{x, y};
-
-            // Prüfen, ob die Koordinate frei ist
-            if (!containsCoordinate(usedCoordinates, newCoord)) {
-                return newCoord; // Freie Koordinate gefunden
-            }
+        int cell = game.getBoard().randomFreeCell(new Random());
+        if (cell < 0) {
+            return null; // Spielfeld ist voll
         }
-
-        // Keine freie Koordinate gefunden
-        return null;
+        return new int[]{Board.cellX(cell), Board.cellY(cell)};
     }
 
+    /**
+     * Draws a uniformly random free 2x2 block from the board's block pool.
+     *
+     * @return the upper left coordinate of the block, or null if no 2x2 block is free
+     */
     private int[] findFourAdjacentCoordinates(Game game) {
-        Random random = new Random();
-        // Maximale Anzahl an Versuchen begrenzen
-        int maxAttempts = 100;
-
-        for (int attempt = 0; attempt < maxAttempts; attempt++) {
-            // Zufällige Startkoordinate generieren (obere linke Ecke des 2x2 Bereichs)
-            // Wir müssen einen Randabstand einhalten, damit die anderen 3 Koordinaten noch im Spielfeld liegen
-            int x = random.nextInt(28); // Max 29, da wir einen zusätzlichen Platz für x+1 brauchen
-            int y = random.nextInt(23); // Max 24, da wir einen zusätzlichen Platz für y+1 brauchen
-
-            // Die vier Koordinaten des 2x2 Bereichs
-            int[][] fourCoordinates = new int[4][2];
-            fourCoordinates[0] = new int[]{x, y};         // Obere linke Ecke
-            fourCoordinates[1] = new int[]{x + 1, y};     // Obere rechte Ecke
-            fourCoordinates[2] = new int[]{x, y + 1};     // Untere linke Ecke
-            fourCoordinates[3] = new int[]{x + 1, y + 1}; // Untere rechte Ecke
-
-            // Überprüfen, ob alle vier Positionen frei sind
-            boolean allPositionsFree = true;
-
-            for (int[] coordinate : fourCoordinates) {
-                // Überprüfen, ob die Position außerhalb des Spielfelds liegt
-                if (coordinate[0] < 0 || coordinate[0] >= 30 || coordinate[1] < 0 || coordinate[1] >= 25) {
-                    allPositionsFree = false;
-                    break;
-                }
-
-                // Überprüfen, ob die Position bereits belegt ist
-                if (containsCoordinate(findUsedCoordinates(game), coordinate)) {
-                    allPositionsFree = false;
-                    break;
-                }
-
-                    if (!allPositionsFree) {
-                    break; // Wenn eine Position belegt ist, suchen wir eine andere Startposition
-                }
-            }
-
-            if (allPositionsFree) {
-                return fourCoordinates[0]; // Wir haben vier freie, nebeneinanderliegende Positionen gefunden
-            }
+        int anchor = game.getBoard().randomFreeBlock(new Random());
+        if (anchor < 0) {
+            return null; // Kein freier 2x2 Bereich vorhanden
         }
-
-        // Kein freier 2x2 Bereich gefunden
-        return null;
+        return new int[]{Board.cellX(anchor), Board.cellY(anchor)};
     }
 
 
-    public void respondToKeyInputs(Game game, User user, String direction) {
+    public void respondToKeyInputs(Game game, Long userId, Direction direction) {
         for (Snake snake : game.getSnakes()) {
-            if (snake.getUserId().equals(user.getId())) {
-                if (direction.equals("UP") && snake.getDirection().equals("DOWN") && snake.getDirectionQueue().isEmpty()) {
-                }
-                else if (direction.equals("DOWN") && snake.getDirection().equals("UP") && snake.getDirectionQueue().isEmpty()) {
-                }
-                else if (direction.equals("LEFT") && snake.getDirection().equals("RIGHT") && snake.getDirectionQueue().isEmpty()) {
-                }
-                else if (direction.equals("RIGHT") && snake.getDirection().equals("LEFT") && snake.getDirectionQueue().isEmpty()) {
-                }
-
-                else if (direction.equals("DOWN") && snake.getDirection().equals("DOWN") && snake.getDirectionQueue().isEmpty()) {
-                }
-                else if (direction.equals("UP") && snake.getDirection().equals("UP") && snake.getDirectionQueue().isEmpty()) {
-                }
-                else if (direction.equals("LEFT") && snake.getDirection().equals("LEFT") && snake.getDirectionQueue().isEmpty()) {
-                }
-                else if (direction.equals("RIGHT") && snake.getDirection().equals("RIGHT") && snake.getDirectionQueue().isEmpty()) {
-                }
-                else {
-                    snake.addDirectionQueue(direction);
-                }
+            if (snake.getUserId().equals(userId)) {
+                respondToKeyInputs(snake, direction);
             }
         }
     }
 
+    /**
+     * Queues the direction for a snake that is already known, e.g. from the session binding.
+     */
+    public void respondToKeyInputs(Snake snake, Direction direction) {
+        // Umkehr oder gleiche Richtung bei leerer Queue wird ignoriert
+        boolean ignored = snake.getDirectionQueue().isEmpty()
+                && (direction == snake.getDirection() || direction == snake.getDirection().opposite());
+        if (!ignored) {
+            snake.addDirectionQueue(direction);
+        }
+    }
+
     public void updateSnakeDirection(Snake snake) {
         if (snake.getDirectionQueue().size() > 0) {
-            String newDirection = snake.popDirectionQueue();
+            Direction newDirection = snake.popDirectionQueue();
 
-            if (newDirection.equals("UP") && !snake.getDirection().equals("DOWN")) {
-                snake.setDirection(newDirection);
-            }
-            else if (newDirection.equals("DOWN") && !snake.getDirection().equals("UP")) {
-                snake.setDirection(newDirection);
-            }
-            else if (newDirection.equals("LEFT") && !snake.getDirection().equals("RIGHT")) {
-                snake.setDirection(newDirection);
-            }
-            else if (newDirection.equals("RIGHT") && !snake.getDirection().equals("LEFT")) {
+            if (newDirection != null && newDirection != snake.getDirection().opposite()) {
                 snake.setDirection(newDirection);
             }
             // check if ReverseControl Effect is active (Powerup)
-            for (Item powerup : snake.getEffects()) {
-                if (powerup instanceof ReverseControl) {
-                    ((ReverseControl) powerup).revertMovement(snake);
-                    break;
+            if (snake.hasEffect(ItemKind.REVERSE_CONTROL)) {
+                snake.setDirection(snake.getDirection().opposite());
+                snake.setReverseTurnsLeft(snake.getReverseTurnsLeft() - 1);
+                if (snake.getReverseTurnsLeft() <= 0) {
+                    snake.removeEffect(ItemKind.REVERSE_CONTROL);
                 }
             }
         }
     }
 
-    private void startCountdown(Game game, int seconds) throws IOException {
-        for (int i = seconds; i > 0; i--) {
-            logger.info("Broadcasting countdown for game: {}", game.getGameId());
-            ObjectNode message = mapper.createObjectNode();
-            message.put("type", "preGame");
-            message.put("countdown", i);
-            Map<String, Object> snakesDictionary = new HashMap<>();
-            for (Snake snake : game.getSnakes()) {
-                String username = snake.getUsername(); // Benutzername als Key
-                snakesDictionary.put(username, snake.getCoordinates());
-            }
-            // Füge die strukturierte Map dem JSON-Objekt hinzu
-            message.set("snakes", mapper.valueToTree(snakesDictionary));
-            // Extrahiere die Cookies aus der Items-Liste (alle Items mit type "cookie")
-            List<int[]> cookiePositions = new ArrayList<>();
-            for (Item item : game.getItems()) {
-                if ("cookie".equals(item.getType())) { // Prüfen, ob Item-Typ "cookie" ist
-                    cookiePositions.add(item.getPosition()); // Position hinzufügen
-                }
-            }
-            // Füge die Cookie-Positionen zu den JSON-Daten hinzu
-            message.set("cookies", mapper.valueToTree(cookiePositions));
-
-            // Extrahiere die Golden Cookies aus der Items-Liste
-            List<int[]> goldenCookiePositions = new ArrayList<>();
-            for (Item item : game.getItems()) {
-                if ("powerup".equals(item.getType()) && item instanceof GoldenCookie) {
-                    goldenCookiePositions.add(item.getPosition());
-                }
-            }
-            // Füge die Golden Cookie-Positionen zu den JSON-Daten hinzu
-            message.set("goldenCookies", mapper.valueToTree(goldenCookiePositions));
-
-            // Extrahiere die ReverseControl-Items aus der Items-Liste
-            List<int[]> reverseControlPositions = new ArrayList<>();
-            for (Item item : game.getItems()) {
-                if ("powerup".equals(item.getType()) && item instanceof ReverseControl) {
-                    reverseControlPositions.add(item.getPosition());
-                }
-            }
-            // Füge die ReverseControl-Positionen zu den JSON-Daten hinzu
-            message.set("reverseControls", mapper.valueToTree(reverseControlPositions));
-
-            // Extrahiere die Divider-Items aus der Items-Liste
-            List<int[]> dividerPositions = new ArrayList<>();
-            for (Item item : game.getItems()) {
-                if ("powerup".equals(item.getType()) && item instanceof Divider) {
-                    dividerPositions.add(item.getPosition());
-                }
-            }
-            // Füge die Divider-Positionen zu den JSON-Daten hinzu
-            message.set("dividers", mapper.valueToTree(dividerPositions));
+    private static List<String> effectNames(Snake snake, long tick) {
+        List<String> effectNames = new ArrayList<>(4);
+        if (snake.hasEffect(ItemKind.GOLDEN_COOKIE)) {
+            effectNames.add(counterName(GOLDEN_COOKIE_NAMES, "GoldenCookie", snake.getGoldenGrowthLeft()));
+        }
+        if (snake.hasEffect(ItemKind.REVERSE_CONTROL)) {
+            effectNames.add(counterName(REVERSE_CONTROL_NAMES, "ReverseControl", snake.getReverseTurnsLeft()));
+        }
+        if (snake.hasEffect(ItemKind.DIVIDER)) {
+            effectNames.add("Divider");
+        }
+        if (snake.hasEffect(ItemKind.MULTIPLIER)) {
+            long remainingTicks = Math.max(0, Math.min(Multiplier.DURATION_TICKS, snake.getMultiplierExpiryTick() - tick));
+            effectNames.add(MULTIPLIER_NAMES[(int) remainingTicks]);
+        }
+        return effectNames;
+    }
 
-            List<int[]> multiplierPositions = new ArrayList<>();
-            for (Item item : game.getItems()) {
-                if ("powerup".equals(item.getType()) && item instanceof Multiplier) {
-                    multiplierPositions.add(item.getPosition());
-                }
-            }
-            // Füge die Divider-Positionen zu den JSON-Daten hinzu
-            message.set("multipliers", mapper.valueToTree(multiplierPositions));
+    private static String counterName(String[] names, String prefix, int count) {
+        // gestapelte GoldenCookies koennen ueber die Tabelle hinaus gehen
+        return count >= 0 && count < names.length ? names[count] : prefix + count;
+    }
 
-            WebSocketHandler webSocketHandler = getWebSocketHandler();
-            webSocketHandler.broadcastToLobby(game.getLobby().getId(), message);
+    private static String[] counterNames(String prefix, int max) {
+        String[] names = new String[max + 1];
+        for (int i = 0; i <= max; i++) {
+            names[i] = prefix + i;
+        }
+        return names;
+    }
 
-            // Warte 1 Sekunde vor der nächsten Iteration
-            try {
-                Thread.sleep(1000); // 1000 Millisekunden = 1 Sekunde
-            }
-            catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                logger.error("Countdown wurde unterbrochen: {}", e.getMessage());
-                break; // Beende die Schleife bei Unterbrechung
-            }
+    private static String[] multiplierNames() {
+        String[] names = new String[(int) Multiplier.DURATION_TICKS + 1];
+        for (int remainingTicks = 0; remainingTicks < names.length; remainingTicks++) {
+            float seconds = remainingTicks * Game.TICK_MILLIS / 1000f;
+            names[remainingTicks] = "Multiplier" + (float) (Math.round(seconds * 100) / 100.0);
         }
+        return names;
     }
 
-    public void rankRemainingPlayers(Game game) {
+    private void broadcastCountdown(Game game, int countdown) throws IOException {
+        logger.info("Broadcasting countdown for game: {}", game.getGameId());
+        GameStateFrames frames = framesOf(game);
+
+        WebSocketHandler webSocketHandler = getWebSocketHandler();
+        webSocketHandler.broadcastToLobby(game.getLobby().getId(), () -> frames.encodeCountdown(game, countdown), null);
+    }
+
+    /**
+     * Puts the snakes still alive on the leaderboard, shortest first, and removes them from the board.
+     *
+     * @return userId -> final length of these snakes, for the length PR in the game result
+     */
+    public Map<Long, Integer> rankRemainingPlayers(Game game) {
         List<Snake> remainingPlayers = new ArrayList<>();
 
         for (Snake snake : game.getSnakes()) {
-            if (snake.getCoordinates().length == 0) {
+            if (!snake.isAlive()) {
                 continue;
             }
             else {
@@ -733,68 +572,97 @@ public class GameService {
             }
         }
 
-        Lobby lobby = game.getLobby();
-        boolean isSoloLobby = lobby.isSolo();
+        Map<Long, Integer> finalLengths = new HashMap<>();
 
-        // Sortiere remainingPlayers nach der Größe von snake.getCoordinates()
-        remainingPlayers.sort((s1, s2) -> Integer.compare(s2.getCoordinates().length, s1.getCoordinates().length));
+        // Sortiere remainingPlayers nach der Länge der Schlange
+        remainingPlayers.sort((s1, s2) -> Integer.compare(s2.getLength(), s1.getLength()));
         // Liste umkehren
         logger.info("Sorting remaining players by length");
         Collections.reverse(remainingPlayers);
         for (Snake player : remainingPlayers) {
-            if (!(game.getLeaderboard().contains(player.getUsername()))) {
-                game.addLeaderboardEntry(player.getUsername());
+            if (!game.isRanked(player.getUserId())) {
+                game.addLeaderboardEntry(player);
             }
-            User user = userRepository.findByUsername(player.getUsername());
             logger.info("Adding {} to leaderboard", player.getUsername());
             logger.info("Leaderboard: {}", game.getLeaderboard());
-            if (!isSoloLobby) {
-                logger.info("So we are really going here even thow we shoudnt");
-                if (user.getLengthPR() < player.getCoordinates().length) {
-                    user.setLengthPR(player.getCoordinates().length);
-                    userRepository.save(user);
-                    userRepository.flush();
-                    }
-            }
+            finalLengths.put(player.getUserId(), player.getLength());
             int[][] newCoords = new int[0][0];
             player.setCoordinates(newCoords);
         }
-
+        return finalLengths;
     }
-    public List<int[]> findUsedCoordinates(Game game) {
-        List<int[]> usedCoordinates = new ArrayList<>();
-        for (Snake snake : game.getSnakes()) {
-            usedCoordinates.addAll(Arrays.asList(snake.getCoordinates()));
 
+    /**
+     * Applies the result of a finished multiplayer game to all participants: one query loads them,
+     * the changes are written as one JDBC batch when the surrounding transaction commits.
+     */
+    private List<User> commitGameResult(List<Long> playerIds, Long winnerId, Map<Long, Integer> finalLengths) {
+        Set<Long> ids = new LinkedHashSet<>(playerIds);
+        if (winnerId != null) {
+            ids.add(winnerId);
         }
-        // Koordinaten aller Items hinzufügen
-        for (Item item : game.getItems()) {
-            // Prüfe, ob es sich um ein spezielles Item mit mehreren Positionen handelt
-            if (item instanceof Divider) {
-                // Füge alle vier Positionen des Dividers hinzu
-                usedCoordinates.addAll(Arrays.asList(((Divider) item).getFourPositions()));
+        List<User> players = userRepository.findAllById(ids);
+        for (User player : players) {
+            boolean won = player.getId().equals(winnerId);
+            if (playerIds.contains(player.getId())) {
+                applyResult(player, won, finalLengths.getOrDefault(player.getId(), 0));
+                logger.info("User {} reached level {}!", player.getUsername(), player.getLevel());
             }
-            else if (item instanceof ReverseControl) {
-                // Füge alle vier Positionen des ReverseControl hinzu
-                usedCoordinates.addAll(Arrays.asList(((ReverseControl) item).getFourPositions()));
+            else if (won) {
+                // der Gewinner hat die Lobby schon verlassen, playedGames wurde beim Verlassen gezaehlt
+                player.setWins(player.getWins() + 1);
             }
-            else {
-                // Für reguläre Items mit einer Position
-                usedCoordinates.add(item.getPosition());
+        }
+        userRepository.saveAll(players);
+        userRepository.flush();
+        return players;
+    }
+
+    /**
+     * Result for a player who leaves a running multiplayer game: counts as played, not as won.
+     */
+    public void commitLeaverResult(Game game, Long userId) {
+        snakeService.flushStats();
+        int length = 0;
+        for (Snake snake : game.getSnakes()) {
+            if (userId.equals(snake.getUserId())) {
+                length = snake.getLength();
             }
         }
-        String coordinates = usedCoordinates.stream()
-                .map(coord -> "[" + coord[0] + ", " + coord[1] + "]")
-                .collect(Collectors.joining(", "));
-        return usedCoordinates;
+        int finalLength = length;
+        User leaver = transactionTemplate.execute(status -> userRepository.findById(userId).map(user -> {
+            applyResult(user, false, finalLength);
+            userRepository.save(user);
+            userRepository.flush();
+            return user;
+        }).orElse(null));
+        if (leaver != null) {
+            leaderboardIndex.update(leaver);
+        }
     }
-    private boolean containsCoordinate(List<int[]> coordinates, int[] coord) {
-        for (int[] c : coordinates) {
-            if (c[0] == coord[0] && c[1] == coord[1]) {
-                return true;
+
+    private static void applyResult(User user, boolean won, int finalLength) {
+        if (won) {
+            user.setWins(user.getWins() + 1);
+        }
+        user.setPlayedGames(user.getPlayedGames() + 1);
+        int points = 1 + (user.getWins() / 2) + (user.getKills() / 4);
+        user.setLevel(5 * Math.sqrt((double) points / 4) - 1);
+        user.setWinRate((double) user.getWins() / user.getPlayedGames());
+        if (user.getLengthPR() < finalLength) {
+            user.setLengthPR(finalLength);
+        }
+    }
+    public List<int[]> findUsedCoordinates(Game game) {
+        // Alle Felder, auf denen eine Schlange oder ein Item liegt
+        List<int[]> usedCoordinates = new ArrayList<>();
+        Board board = game.getBoard();
+        for (int cell = 0; cell < Board.CELLS; cell++) {
+            if (!board.isFree(cell)) {
+                usedCoordinates.add(new int[]{Board.cellX(cell), Board.cellY(cell)});
             }
         }
-        return false;
+        return usedCoordinates;
     }
     private void spawnGameGrid(Game game, String cookieSpawnRate, Boolean powerupsWanted) {
         Random random = new Random();
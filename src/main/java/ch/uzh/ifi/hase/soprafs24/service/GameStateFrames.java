@@ -0,0 +1,261 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.entity.Game;
+import ch.uzh.ifi.hase.soprafs24.entity.Item;
+import ch.uzh.ifi.hase.soprafs24.entity.Snake;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Delta encoding of the game state of one game. Every {@link #KEYFRAME_INTERVAL} frames a full
+ * keyframe is sent, in between only the new head cells and dropped tail cells per snake, the added
+ * and removed items and the changed effects. Each frame carries its number and the number of its
+ * keyframe; the content is written into a reused {@link GameFrame}.
+ */
+public class GameStateFrames {
+
+    public static final int KEYFRAME_INTERVAL = 25;
+    // so viele neue Kopfzellen pro Frame werden gesucht, bevor der ganze Koerper geschickt wird
+    private static final int MAX_HEAD_PUSHES = 4;
+
+    private long frame = -1;
+    private long keyframe = -1;
+    private volatile boolean keyframeRequested = false;
+
+    private final GameFrame content = new GameFrame();
+    // ganzer Zustand des aktuellen Frames fuer einzelne Clients, nur bei Bedarf gefuellt
+    private final GameFrame keyframeContent = new GameFrame();
+    private boolean keyframeContentFilled = false;
+    private Game game;
+    private final GameStateJsonEncoder jsonEncoder = new GameStateJsonEncoder();
+    private final BinaryFrameEncoder binaryEncoder = new BinaryFrameEncoder();
+    private final Map<Snake, SentSnake> sentSnakes = new IdentityHashMap<>();
+    private final Map<Item, Long> sentItems = new IdentityHashMap<>();
+
+    /**
+     * Forces the next frame to be a keyframe.
+     */
+    public void requestKeyframe() {
+        keyframeRequested = true;
+    }
+
+    /**
+     * Advances to the next frame and fills it with the current state of the game.
+     *
+     * @param effectNames the effect names of a snake as they are shown to the clients
+     * @return the frame; it is only valid until the next call
+     */
+    public GameFrame nextFrame(Game game, Function<Snake, List<String>> effectNames) {
+        this.game = game;
+        frame++;
+        keyframeContentFilled = false;
+        boolean isKeyframe = keyframe < 0 || keyframeRequested || frame - keyframe >= KEYFRAME_INTERVAL;
+        if (isKeyframe) {
+            keyframeRequested = false;
+            keyframe = frame;
+            sentSnakes.clear();
+            sentItems.clear();
+        }
+        content.reset(isKeyframe, frame, keyframe, Math.round(game.getTimestamp()));
+        putSnakes(game, isKeyframe);
+        putItems(game);
+        for (Snake snake : game.getSnakes()) {
+            List<String> names = effectNames.apply(snake);
+            SentSnake sent = sentSnakes.get(snake);
+            if (isKeyframe || !names.equals(sent.effects)) {
+                content.addEffects(snake.getUsername(), names);
+            }
+            sent.effects = names;
+        }
+        return content;
+    }
+
+    /**
+     * @return the current frame as UTF-8 JSON
+     */
+    public byte[] encodeJson() throws IOException {
+        return jsonEncoder.encode(content);
+    }
+
+    /**
+     * @return the current state as a UTF-8 JSON keyframe; the following deltas apply to it
+     */
+    public byte[] encodeKeyframeJson() throws IOException {
+        return jsonEncoder.encode(keyframeContent());
+    }
+
+    /**
+     * @return the current state as a keyframe in the binary protocol
+     */
+    public byte[] encodeKeyframeBinary() {
+        return binaryEncoder.encode(keyframeContent());
+    }
+
+    /**
+     * @return the preGame message for the countdown, encoded with the same reused buffer
+     */
+    public byte[] encodeCountdown(Game game, int countdown) throws IOException {
+        return jsonEncoder.encodeCountdown(game, countdown);
+    }
+
+    /**
+     * @return the current frame in the binary protocol
+     */
+    public byte[] encodeBinary() {
+        return binaryEncoder.encode(content);
+    }
+
+    public long getFrame() {
+        return frame;
+    }
+
+    public long getKeyframe() {
+        return keyframe;
+    }
+
+    // traegt die Keyframe-Nummer der Kette, damit die folgenden Deltas darauf passen
+    private GameFrame keyframeContent() {
+        if (content.isKeyframe()) {
+            return content;
+        }
+        if (!keyframeContentFilled) {
+            keyframeContent.reset(true, frame, keyframe, content.getTimestamp());
+            for (Snake snake : game.getSnakes()) {
+                putBody(keyframeContent.addSnake(snake.getUsername(), true), snake);
+                keyframeContent.addEffects(snake.getUsername(), sentSnakes.get(snake).effects);
+            }
+            for (Item item : game.getItems()) {
+                keyframeContent.getAddedItems(item.getKind()).add(packPosition(item));
+            }
+            keyframeContentFilled = true;
+        }
+        return keyframeContent;
+    }
+
+    private void putSnakes(Game game, boolean isKeyframe) {
+        for (Snake snake : game.getSnakes()) {
+            SentSnake sent = sentSnakes.get(snake);
+            if (sent == null) {
+                sent = new SentSnake();
+                sentSnakes.put(snake, sent);
+                // im Keyframe auch leere (tote) Schlangen, im Delta nur neue mit Koerper
+                if (isKeyframe || snake.getLength() > 0) {
+                    putBody(content.addSnake(snake.getUsername(), true), snake);
+                }
+            }
+            else {
+                putSnakeDelta(snake, sent);
+            }
+            sent.copyBody(snake);
+            sent.seenFrame = frame;
+        }
+        Iterator<Map.Entry<Snake, SentSnake>> removed = sentSnakes.entrySet().iterator();
+        while (removed.hasNext()) {
+            Map.Entry<Snake, SentSnake> entry = removed.next();
+            if (entry.getValue().seenFrame != frame) {
+                content.addSnake(entry.getKey().getUsername(), true);
+                removed.remove();
+            }
+        }
+    }
+
+    // im Keyframe ist sentItems leer, also gelten alle Items als neu
+    private void putItems(Game game) {
+        for (Item item : game.getItems()) {
+            if (sentItems.put(item, frame) == null) {
+                content.getAddedItems(item.getKind()).add(packPosition(item));
+            }
+        }
+        Iterator<Map.Entry<Item, Long>> sent = sentItems.entrySet().iterator();
+        while (sent.hasNext()) {
+            Map.Entry<Item, Long> entry = sent.next();
+            if (entry.getValue() != frame) {
+                Item item = entry.getKey();
+                content.getRemovedItems(item.getKind()).add(packPosition(item));
+                sent.remove();
+            }
+        }
+    }
+
+    private void putSnakeDelta(Snake snake, SentSnake sent) {
+        int length = snake.getLength();
+        if (length == 0) {
+            if (sent.length > 0) {
+                content.addSnake(snake.getUsername(), false).setTail(sent.length);
+            }
+            return;
+        }
+        // der alte Kopf muss unter den ersten Zellen liegen, der Rest muss der alte Koerper sein
+        int pushes = -1;
+        int searchLimit = Math.min(length - 1, MAX_HEAD_PUSHES);
+        for (int k = 0; k <= searchLimit && sent.length > 0; k++) {
+            if (snake.cellAt(k) == sent.body[0] && sent.continues(snake, k)) {
+                pushes = k;
+                break;
+            }
+        }
+        if (pushes < 0) {
+            putBody(content.addSnake(snake.getUsername(), true), snake);
+            return;
+        }
+        int pops = sent.length - (length - pushes);
+        if (pushes == 0 && pops == 0) {
+            return;
+        }
+        GameFrame.SnakeSection section = content.addSnake(snake.getUsername(), false);
+        for (int i = 0; i < pushes; i++) {
+            section.getCells().add(snake.cellAt(i));
+        }
+        section.setTail(pops);
+    }
+
+    private static void putBody(GameFrame.SnakeSection section, Snake snake) {
+        for (int i = 0; i < snake.getLength(); i++) {
+            section.getCells().add(snake.cellAt(i));
+        }
+    }
+
+    private static int packPosition(Item item) {
+        int[] position = item.getPosition();
+        return Snake.packCell(position[0], position[1]);
+    }
+
+    /**
+     * What the clients got of a snake in the previous frame.
+     */
+    private static final class SentSnake {
+        private int[] body = new int[16];
+        private int length = 0;
+        private long seenFrame;
+        private List<String> effects = List.of();
+
+        private void copyBody(Snake snake) {
+            length = snake.getLength();
+            if (body.length < length) {
+                body = new int[Math.max(length, body.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                body[i] = snake.cellAt(i);
+            }
+        }
+
+        // liegt der gesendete Koerper ab Zelle k der Schlange (ggf. hinten gekuerzt)?
+        private boolean continues(Snake snake, int k) {
+            int remaining = snake.getLength() - k;
+            if (remaining > length) {
+                return false;
+            }
+            for (int i = 0; i < remaining; i++) {
+                if (snake.cellAt(k + i) != body[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.ItemKind;
+import ch.uzh.ifi.hase.soprafs24.entity.Game;
+import ch.uzh.ifi.hase.soprafs24.entity.Item;
+import ch.uzh.ifi.hase.soprafs24.entity.Snake;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes the gameState and preGame messages straight from the game with a streaming generator,
+ * without building Jackson trees or intermediate maps and lists. The output buffer is reused from
+ * message to message; only the finished message is copied out.
+ * Not thread-safe, every game encodes on its own loop thread.
+ */
+public class GameStateJsonEncoder {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+
+    /**
+     * A keyframe has the layout of the former gameState message (username -> coordinates, one
+     * position list per item kind, username -> effect names); a delta is a "gameStateDelta" with
+     * per snake either {@code body} or {@code head} and {@code tail}, and the {@code added} and
+     * {@code removed} item positions per kind.
+     */
+    public byte[] encode(GameFrame frame) throws IOException {
+        buffer.reset();
+        try (JsonGenerator json = JSON_FACTORY.createGenerator(buffer)) {
+            json.writeStartObject();
+            json.writeStringField("type", frame.isKeyframe() ? "gameState" : "gameStateDelta");
+            json.writeNumberField("timestamp", frame.getTimestamp());
+            json.writeNumberField("frame", frame.getFrame());
+            json.writeNumberField("keyframe", frame.getKeyframeNumber());
+
+            json.writeObjectFieldStart("snakes");
+            for (int i = 0; i < frame.getSnakeCount(); i++) {
+                GameFrame.SnakeSection section = frame.getSnake(i);
+                json.writeFieldName(section.getUsername());
+                if (frame.isKeyframe()) {
+                    writeCells(json, section.getCells());
+                    continue;
+                }
+                json.writeStartObject();
+                if (section.isWholeBody()) {
+                    json.writeFieldName("body");
+                    writeCells(json, section.getCells());
+                }
+                else {
+                    json.writeFieldName("head");
+                    writeCells(json, section.getCells());
+                    json.writeNumberField("tail", section.getTail());
+                }
+                json.writeEndObject();
+            }
+            json.writeEndObject();
+
+            if (frame.isKeyframe()) {
+                for (ItemKind kind : ItemKind.values()) {
+                    json.writeFieldName(kind.getStateKey());
+                    writeCells(json, frame.getAddedItems(kind));
+                }
+            }
+            else {
+                json.writeObjectFieldStart("added");
+                writeChangedItems(json, frame, true);
+                json.writeEndObject();
+                json.writeObjectFieldStart("removed");
+                writeChangedItems(json, frame, false);
+                json.writeEndObject();
+            }
+
+            json.writeObjectFieldStart("effects");
+            for (int i = 0; i < frame.getEffectCount(); i++) {
+                json.writeArrayFieldStart(frame.getEffectUsername(i));
+                List<String> names = frame.getEffectNames(i);
+                for (int n = 0; n < names.size(); n++) {
+                    json.writeString(names.get(n));
+                }
+                json.writeEndArray();
+            }
+            json.writeEndObject();
+            json.writeEndObject();
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * The preGame message sent once per second during the countdown: all snakes and all items.
+     */
+    public byte[] encodeCountdown(Game game, int countdown) throws IOException {
+        buffer.reset();
+        try (JsonGenerator json = JSON_FACTORY.createGenerator(buffer)) {
+            json.writeStartObject();
+            json.writeStringField("type", "preGame");
+            json.writeNumberField("countdown", countdown);
+            json.writeObjectFieldStart("snakes");
+            for (Snake snake : game.getSnakes()) {
+                json.writeArrayFieldStart(snake.getUsername());
+                for (int i = 0; i < snake.getLength(); i++) {
+                    writeCell(json, snake.cellAt(i));
+                }
+                json.writeEndArray();
+            }
+            json.writeEndObject();
+            // ein Durchlauf pro Art, damit keine Zwischenlisten entstehen
+            for (ItemKind kind : ItemKind.values()) {
+                json.writeArrayFieldStart(kind.getStateKey());
+                for (Item item : game.getItems()) {
+                    if (item.getKind() == kind) {
+                        int[] position = item.getPosition();
+                        json.writeStartArray();
+                        json.writeNumber(position[0]);
+                        json.writeNumber(position[1]);
+                        json.writeEndArray();
+                    }
+                }
+                json.writeEndArray();
+            }
+            json.writeEndObject();
+        }
+        return buffer.toByteArray();
+    }
+
+    private static void writeChangedItems(JsonGenerator json, GameFrame frame, boolean added) throws IOException {
+        for (ItemKind kind : ItemKind.values()) {
+            GameFrame.CellList cells = added ? frame.getAddedItems(kind) : frame.getRemovedItems(kind);
+            if (cells.size() > 0) {
+                json.writeFieldName(kind.getStateKey());
+                writeCells(json, cells);
+            }
+        }
+    }
+
+    private static void writeCells(JsonGenerator json, GameFrame.CellList cells) throws IOException {
+        json.writeStartArray();
+        for (int i = 0; i < cells.size(); i++) {
+            writeCell(json, cells.get(i));
+        }
+        json.writeEndArray();
+    }
+
+    private static void writeCell(JsonGenerator json, int cell) throws IOException {
+        json.writeStartArray();
+        json.writeNumber(Snake.cellX(cell));
+        json.writeNumber(Snake.cellY(cell));
+        json.writeEndArray();
+    }
+}
@@ -0,0 +1,279 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * In-memory ranking of all users by level, then win rate (both descending), then id.
+ * The entries are kept in a treap whose nodes know the size of their subtree, so updates and rank
+ * lookups are O(log n). The index holds snapshots and has to be told about every committed change
+ * through {@link #update(User)}.
+ */
+@Component
+public class LeaderboardIndex {
+
+    // Länge der globalen Bestenliste
+    public static final int TOP_SIZE = 10;
+
+    private Node root;
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private long topVersion;
+
+    /**
+     * Replaces the whole index, e.g. with all users at startup.
+     */
+    public synchronized void rebuild(Collection<User> users) {
+        root = null;
+        entries.clear();
+        for (User user : users) {
+            update(user);
+        }
+        topVersion++;
+    }
+
+    /**
+     * Inserts the user or moves them to the position of their current stats.
+     */
+    public synchronized void update(User user) {
+        if (user.getId() == null) {
+            return;
+        }
+        Entry entry = new Entry(user);
+        Entry previous = entries.put(entry.id, entry);
+        boolean touchesTop = false;
+        if (previous != null) {
+            if (previous.sameAs(entry)) {
+                entries.put(entry.id, previous);
+                return;
+            }
+            touchesTop = rankOf(previous) <= TOP_SIZE;
+            root = remove(root, previous);
+        }
+        root = insert(root, new Node(entry));
+        if (touchesTop || rankOf(entry) <= TOP_SIZE) {
+            topVersion++;
+        }
+    }
+
+    public synchronized void updateAll(Collection<User> users) {
+        for (User user : users) {
+            update(user);
+        }
+    }
+
+    public synchronized void remove(Long userId) {
+        Entry previous = entries.remove(userId);
+        if (previous != null) {
+            if (rankOf(previous) <= TOP_SIZE) {
+                topVersion++;
+            }
+            root = remove(root, previous);
+        }
+    }
+
+    /**
+     * @return rank of the user starting at 1, or -1 if the user is not in the index
+     */
+    public synchronized int rank(Long userId) {
+        Entry entry = entries.get(userId);
+        return entry == null ? -1 : rankOf(entry);
+    }
+
+    /**
+     * Changes whenever the first {@link #TOP_SIZE} entries may have changed.
+     */
+    public synchronized long getTopVersion() {
+        return topVersion;
+    }
+
+    private int rankOf(Entry entry) {
+        int before = 0;
+        Node node = root;
+        while (node != null) {
+            int cmp = entry.compareTo(node.entry);
+            if (cmp == 0) {
+                return before + size(node.left) + 1;
+            }
+            if (cmp < 0) {
+                node = node.left;
+            }
+            else {
+                before += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The best {@code limit} users, as detached copies of the indexed stats.
+     */
+    public synchronized List<User> top(int limit) {
+        List<User> top = new ArrayList<>(Math.min(limit, size(root)));
+        collect(root, limit, top);
+        return top;
+    }
+
+    public synchronized int size() {
+        return size(root);
+    }
+
+    private static void collect(Node node, int limit, List<User> out) {
+        if (node == null || out.size() >= limit) {
+            return;
+        }
+        collect(node.left, limit, out);
+        if (out.size() < limit) {
+            out.add(node.entry.toUser());
+            collect(node.right, limit, out);
+        }
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static Node insert(Node node, Node inserted) {
+        if (node == null) {
+            return inserted;
+        }
+        if (inserted.priority > node.priority) {
+            Node[] parts = split(node, inserted.entry);
+            inserted.left = parts[0];
+            inserted.right = parts[1];
+            return inserted.update();
+        }
+        if (inserted.entry.compareTo(node.entry) < 0) {
+            node.left = insert(node.left, inserted);
+        }
+        else {
+            node.right = insert(node.right, inserted);
+        }
+        return node.update();
+    }
+
+    private static Node remove(Node node, Entry entry) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = entry.compareTo(node.entry);
+        if (cmp == 0) {
+            return merge(node.left, node.right);
+        }
+        if (cmp < 0) {
+            node.left = remove(node.left, entry);
+        }
+        else {
+            node.right = remove(node.right, entry);
+        }
+        return node.update();
+    }
+
+    // teilt in Knoten vor und ab dem Schlüssel
+    private static Node[] split(Node node, Entry key) {
+        if (node == null) {
+            return new Node[]{null, null};
+        }
+        if (node.entry.compareTo(key) < 0) {
+            Node[] parts = split(node.right, key);
+            node.right = parts[0];
+            return new Node[]{node.update(), parts[1]};
+        }
+        Node[] parts = split(node.left, key);
+        node.left = parts[1];
+        return new Node[]{parts[0], node.update()};
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return left.update();
+        }
+        right.left = merge(left, right.left);
+        return right.update();
+    }
+
+    private static final class Node {
+        private final Entry entry;
+        private final int priority = ThreadLocalRandom.current().nextInt();
+        private Node left;
+        private Node right;
+        private int size = 1;
+
+        private Node(Entry entry) {
+            this.entry = entry;
+        }
+
+        private Node update() {
+            size = size(left) + size(right) + 1;
+            return this;
+        }
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        private final Long id;
+        private final String username;
+        private final double level;
+        private final double winRate;
+        private final int wins;
+        private final int kills;
+        private final int playedGames;
+        private final int lengthPR;
+
+        private Entry(User user) {
+            this.id = user.getId();
+            this.username = user.getUsername();
+            this.level = user.getLevel();
+            this.winRate = user.getWinRate();
+            this.wins = user.getWins();
+            this.kills = user.getKills();
+            this.playedGames = user.getPlayedGames();
+            this.lengthPR = user.getLengthPR();
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int cmp = Double.compare(other.level, level);
+            if (cmp == 0) {
+                cmp = Double.compare(other.winRate, winRate);
+            }
+            if (cmp == 0) {
+                cmp = id.compareTo(other.id);
+            }
+            return cmp;
+        }
+
+        private boolean sameAs(Entry other) {
+            return compareTo(other) == 0 && wins == other.wins && kills == other.kills
+                    && playedGames == other.playedGames && lengthPR == other.lengthPR
+                    && Objects.equals(username, other.username);
+        }
+
+        private User toUser() {
+            User user = new User();
+            user.setId(id);
+            user.setUsername(username);
+            user.setLevel(level);
+            user.setWinRate(winRate);
+            user.setWins(wins);
+            user.setKills(kills);
+            user.setPlayedGames(playedGames);
+            user.setLengthPR(lengthPR);
+            return user;
+        }
+    }
+}
@@ -12,10 +12,12 @@ import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContext;
 // import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
@@ -31,6 +33,8 @@ public class LobbyService {
 
     private final Logger log = LoggerFactory.getLogger(LobbyService.class);
     private static final Map<Long, Game> lobbyGamesMap = new ConcurrentHashMap<>();
+    // Teilnehmer pro Lobby im Speicher, damit Broadcasts ohne Datenbankzugriff auskommen
+    private final Map<Long, List<Long>> lobbyRosters = new ConcurrentHashMap<>();
 
     private final LobbyRepository lobbyRepository;
     private final UserRepository userRepository;
@@ -77,6 +81,7 @@ public class LobbyService {
         // Add admin as first participant
         savedLobby.addParticipant(admin);
         lobbyRepository.save(savedLobby);
+        updateRoster(savedLobby);
 
         log.info("Created new lobby with ID: {} and admin: {}", savedLobby.getId(), admin.getUsername());
 
@@ -96,6 +101,7 @@ public class LobbyService {
                 if (lobby.getParticipantIds().size() < 4) {
                     lobby.addParticipant(user);
                     lobbyRepository.save(lobby);
+                    updateRoster(lobby);
                     return lobby;
                 }
             }
@@ -121,6 +127,7 @@ public class LobbyService {
         // Add admin as first participant
         savedLobby.addParticipant(admin);
         lobbyRepository.save(savedLobby);
+        updateRoster(savedLobby);
 
         // Schedule bot additions
         botAdder(savedLobby);
@@ -165,6 +172,7 @@ public class LobbyService {
         
                     latestLobby.addParticipant(createdBot);
                     lobbyRepository.save(latestLobby);
+                    updateRoster(latestLobby);
         
                     WebSocketHandler webSocketHandler = getWebSocketHandler();
                     webSocketHandler.sendLobbyStateToUsers(latestLobby.getId());
@@ -191,6 +199,43 @@ public class LobbyService {
                 .orElseThrow(() -> new IllegalArgumentException("Lobby not found with ID: " + lobbyId));
     }
 
+    /**
+     * Returns the participants of a lobby from the in-memory roster. The database is only read
+     * when the lobby is not in the roster yet, e.g. after a restart. A missing lobby is not
+     * remembered, so the roster only holds lobbies that exist.
+     *
+     * @param lobbyId the ID of the lobby
+     * @return immutable list of participant IDs, empty if the lobby does not exist
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<Long> getParticipantIds(long lobbyId) {
+        List<Long> roster = lobbyRosters.get(lobbyId);
+        if (roster != null) {
+            return roster;
+        }
+        Optional<Lobby> lobby = lobbyRepository.findById(lobbyId);
+        if (lobby.isPresent()) {
+            return updateRoster(lobby.get());
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Replaces the roster of the lobby with a snapshot of its current participants.
+     * Has to be called whenever participants are added or removed.
+     *
+     * @param lobby the lobby whose participants changed
+     * @return the new roster
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<Long> updateRoster(Lobby lobby) {
+        List<Long> roster = List.copyOf(lobby.getParticipantIds());
+        if (lobby.getId() != null) {
+            lobbyRosters.put(lobby.getId(), roster);
+        }
+        return roster;
+    }
+
     /**
      * Validates if a lobby code exists
      *
@@ -255,7 +300,9 @@ public class LobbyService {
         lobbyRepository.findById(lobby.getId())
                 .orElseThrow(() -> new IllegalArgumentException("Lobby not found with ID: " + lobby.getId()));
 
-        return lobbyRepository.save(lobby);
+        Lobby savedLobby = lobbyRepository.save(lobby);
+        updateRoster(lobby);
+        return savedLobby;
     }
 
     /**
@@ -264,6 +311,7 @@ public class LobbyService {
      * @param lobbyId the ID of the lobby to delete
      */
     public void deleteLobby(Long lobbyId) {
+        lobbyRosters.remove(lobbyId);
         // Check if the lobby exists
         Optional<Lobby> lobbyOptional = lobbyRepository.findById(lobbyId);
         if (lobbyOptional.isPresent()) {
@@ -1,15 +1,11 @@
 package ch.uzh.ifi.hase.soprafs24.service;
 
-import javax.transaction.Transactional;
-
+import ch.uzh.ifi.hase.soprafs24.constant.Direction;
+import ch.uzh.ifi.hase.soprafs24.constant.ItemKind;
+import ch.uzh.ifi.hase.soprafs24.entity.Board;
 import ch.uzh.ifi.hase.soprafs24.entity.Item;
-import ch.uzh.ifi.hase.soprafs24.entity.Powerdowns.Divider;
-import ch.uzh.ifi.hase.soprafs24.entity.Powerups.GoldenCookie;
-import ch.uzh.ifi.hase.soprafs24.entity.Powerups.Multiplier;
-import ch.uzh.ifi.hase.soprafs24.entity.User;
 import ch.uzh.ifi.hase.soprafs24.entity.Lobby;
 import ch.uzh.ifi.hase.soprafs24.handler.WebSocketHandler;
-import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
 
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Service;
@@ -21,15 +17,12 @@ import ch.uzh.ifi.hase.soprafs24.entity.Game;
 import ch.uzh.ifi.hase.soprafs24.entity.Snake;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
 
 @Service
-@Transactional
 public class SnakeService {
 
-    private final UserRepository userRepository;
+    // Kills und Laengen-PR gehen gesammelt in die Datenbank, nie aus dem Tick heraus
+    private final StatsWriter statsWriter;
 
 /////
     private final ObjectMapper mapper = new ObjectMapper();
@@ -37,79 +30,73 @@ public class SnakeService {
     private final ApplicationContext applicationContext;
 
 /////
-    public SnakeService(UserService userService, UserRepository userRepository, ApplicationContext applicationContext) {
-        this.userRepository = userRepository;
+    public SnakeService(UserService userService, StatsWriter statsWriter, ApplicationContext applicationContext) {
+        this.statsWriter = statsWriter;
         //
         this.applicationContext = applicationContext;
         //
     }
 
     public void moveSnake(Snake snake) {
-        int[][] coordinates = snake.getCoordinates();
-        int[] newHead;
-        if (snake.getDirection().equals("UP")) {
-            newHead = new int[]{coordinates[0][0], coordinates[0][1] - 1};
-        } else if (snake.getDirection().equals("DOWN")) {
-            newHead = new int[] {coordinates[0][0], coordinates[0][1] + 1};
-        } else if (snake.getDirection().equals("LEFT")) {
-            newHead = new int[]{coordinates[0][0] - 1, coordinates[0][1]};
-        } else if (snake.getDirection().equals("RIGHT")) {
-            newHead = new int[] {coordinates[0][0] + 1, coordinates[0][1]};
-        } else {
-            throw new IllegalArgumentException("Invalid direction: " + snake.getDirection());
+        Direction direction = snake.getDirection();
+        if (direction == null) {
+            throw new IllegalArgumentException("Invalid direction: " + direction);
         }
-        // check if goldenCookie active
-        List<Item> effectsCopy = new ArrayList<>(snake.getEffects());
-        for (Item effect : effectsCopy) {
-            if (effect instanceof GoldenCookie){((GoldenCookie) effect).growGolden(snake);}
-            if (effect instanceof Divider){((Divider) effect).checkIfActive(snake);}
+        int newX = snake.getHeadX() + direction.getDx();
+        int newY = snake.getHeadY() + direction.getDy();
+        if (snake.hasEffects()) {
+            updateEffects(snake);
         }
 
         // Überprüfe auf Cookie-Kollision
         boolean ateCookie = checkCookieCollision(snake);
         if (ateCookie) {
             snake.addGrowCount();
-            for (Item effect : effectsCopy) {
-                if (effect instanceof Multiplier){((Multiplier) effect).multiplyCookie(snake);}
+            // Multiplier aktiv: der Cookie zählt doppelt
+            if (snake.hasEffect(ItemKind.MULTIPLIER)) {
+                snake.addGrowCount();
             }
         }
-        // Neues Koordinaten-Array erstellen
-        int[][] newCoordinates;
-        if (snake.getGrowCount()>=1) {
-            // Wenn ein Cookie gegessen wurde, behalten wir den Schwanz (Schlange wächst)
-            newCoordinates = new int[coordinates.length + 1][];
-        } else {
-            // Normalfall: Der Schwanz wird gelöscht (gleiche Länge)
-            newCoordinates = new int[coordinates.length][];
-        }
-        newCoordinates[0] = newHead;
-        if (snake.getGrowCount()>=1) {
-            System.arraycopy(coordinates, 0, newCoordinates, 1, coordinates.length);
+        // Wenn ein Cookie gegessen wurde, behalten wir den Schwanz (Schlange wächst),
+        // sonst wird der Schwanz gelöscht (gleiche Länge). Das Spielfeld wird dabei nachgeführt.
+        boolean grows = snake.getGrowCount() >= 1;
+        snake.moveHead(newX, newY, grows);
+        if (grows) {
             snake.removeGrowCount();
-        }else{
-        System.arraycopy(coordinates, 0, newCoordinates, 1, coordinates.length-1);
         }
-        snake.setCoordinates(newCoordinates);
 
     }
 
+    /**
+     * Advances the effects of the snake by one tick: a golden cookie grows the snake while growth is
+     * left, a divider is shown for a single tick and a multiplier expires at its expiry tick.
+     */
+    private void updateEffects(Snake snake) {
+        if (snake.hasEffect(ItemKind.GOLDEN_COOKIE)) {
+            if (snake.getGoldenGrowthLeft() > 0) {
+                snake.addGrowCount();
+                snake.setGoldenGrowthLeft(snake.getGoldenGrowthLeft() - 1);
+            }
+            else {
+                snake.removeEffect(ItemKind.GOLDEN_COOKIE);
+            }
+        }
+        snake.removeEffect(ItemKind.DIVIDER);
+        if (snake.hasEffect(ItemKind.MULTIPLIER) && snake.getGame().getTick() >= snake.getMultiplierExpiryTick()) {
+            snake.removeEffect(ItemKind.MULTIPLIER);
+        }
+    }
+
     private boolean checkCookieCollision(Snake snake) {
         // Position des Kopfes der Schlange abrufen
-        int[] head = snake.getCoordinates()[0]; // Der Kopf ist der erste Punkt im Koordinatenarray
-
-        // Durchlaufen der Items im Spiel (Game)
-        for (Item item : snake.getGame().getItems()) {
-            // Prüfen, ob das aktuelle Item vom Typ "cookie" ist
-            if ("cookie".equals(item.getType())) {
-                int[] cookiePosition = item.getPosition(); // Cookie-Position abrufen
-
-                // Prüfen, ob die Kopfposition mit der Cookie-Position übereinstimmt
-                if (head[0] == cookiePosition[0] && head[1] == cookiePosition[1]) {
-                    // Kollision -> Entfernt den Cookie aus dem Spiel
-                    snake.getGame().getItems().remove(item);
-                    return true; // Eine Kollision wurde festgestellt
-                }
-            }
+        Game game = snake.getGame();
+
+        // Item auf dem Feld des Kopfes nachschlagen
+        Item item = game.getBoard().itemAt(snake.getHeadX(), snake.getHeadY());
+        if (item != null && item.getKind() == ItemKind.COOKIE) {
+            // Kollision -> Entfernt den Cookie aus dem Spiel
+            game.removeItem(item);
+            return true;
         }
 
         // Keine Kollision gefunden
@@ -117,56 +104,45 @@ public class SnakeService {
     }
 
     public boolean checkCollision(Snake snake, Game game) {
-        if (snake.getCoordinates().length == 0) {
+        if (!snake.isAlive()) {
             return false;
         }
 
         Lobby lobby = game.getLobby();
         boolean isSoloLobby = lobby.isSolo();
         
-        int[] head = snake.getCoordinates()[0];
+        int headX = snake.getHeadX();
+        int headY = snake.getHeadY();
         //check for collision with walls
-        if (head[0] < 0 || head[0] >= 30 || head[1] < 0 || head[1] >= 25) {
+        if (!Board.inBounds(headX, headY)) {
             // updating length-PR
-            String username = snake.getUsername();
-            User victim = userRepository.findByUsername(username);
             if (!isSoloLobby) {
-                if (victim.getLengthPR() < snake.getCoordinates().length) {
-                    victim.setLengthPR(snake.getCoordinates().length);
-                    userRepository.save(victim);
-                    userRepository.flush();
-                }
+                statsWriter.recordDeath(snake.getUserId(), snake.getLength());
             }
             return true;
         }
-        // check collision with other snakes
+        // the head is the only segment on its cell unless it ran into a snake
+        if (game.getBoard().snakeCount(headX, headY) <= 1) {
+            return false;
+        }
+        // collision: find out whom the head ran into
+        int headCell = snake.cellAt(0);
         for (Snake otherSnake : game.getSnakes()) {
-            //other snake is already dead
-            if (otherSnake.getCoordinates().length == 0) {
-                continue;
-            }
+            //other snake is already dead: getLength() is 0, the loop is skipped
             // check if the snake is colliding with itself or someone else
-            for (int i = 0; i < otherSnake.getCoordinates().length; i++) {
+            for (int i = 0; i < otherSnake.getLength(); i++) {
                 // dont check your own head with your own head
                 if (snake == otherSnake && i == 0) {
                     continue;
                 }
-                if (Arrays.equals(head, otherSnake.getCoordinates()[i])) {
+                if (otherSnake.cellAt(i) == headCell) {
                     // updating kill count for the snake who killed this snake
                     if (snake != otherSnake) { // if it did not collide in itself
-                        String snakeName = otherSnake.getUsername();
-                        User killer = userRepository.findByUsername(snakeName);
-                        killer.setKills(killer.getKills()+1);
+                        statsWriter.recordKill(otherSnake.getUserId());
                     }
                     // updating length-PR
-                    String username = snake.getUsername();
-                    User victim = userRepository.findByUsername(username);
                     if (!isSoloLobby) {
-                        if (victim.getLengthPR() < snake.getCoordinates().length) {
-                            victim.setLengthPR(snake.getCoordinates().length);
-                            userRepository.save(victim);
-                            userRepository.flush();
-                        }
+                        statsWriter.recordDeath(snake.getUserId(), snake.getLength());
                     }
 
                     sendDeathMsg(snake, game);
@@ -178,6 +154,13 @@ public class SnakeService {
         return false;
     }
 
+    /**
+     * Writes the kills and length PRs recorded so far.
+     */
+    public void flushStats() {
+        statsWriter.flush();
+    }
+
     //JUST FOR DEBUGGING
 
     private void sendDeathMsg(Snake snake, Game game) {
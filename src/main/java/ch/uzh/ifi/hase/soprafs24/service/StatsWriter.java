@@ -0,0 +1,149 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind for the game stats. The game loop only records kill and death events in memory;
+ * a background writer coalesces them per user and applies them in one transaction per batch.
+ * A batch whose transaction fails is queued again and merged into the next one.
+ */
+@Service
+public class StatsWriter {
+
+    static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+    private static final Logger logger = LoggerFactory.getLogger(StatsWriter.class);
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final LeaderboardIndex leaderboardIndex;
+    private final Queue<StatsEvent> events = new ConcurrentLinkedQueue<>();
+    // haelt flush() vom Spiel-Thread und vom Writer auseinander
+    private final Object flushLock = new Object();
+    private final ScheduledExecutorService writer;
+
+    public StatsWriter(UserRepository userRepository, PlatformTransactionManager transactionManager,
+                       LeaderboardIndex leaderboardIndex) {
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // eigene Transaktion: ein Rollback des Aufrufers darf den schon entnommenen Batch nicht verwerfen
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.leaderboardIndex = leaderboardIndex;
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stats-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::flushQuietly, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The snake of user {@code userId} killed another snake.
+     */
+    public void recordKill(Long userId) {
+        events.add(new StatsEvent(userId, 1, 0));
+    }
+
+    /**
+     * The snake of user {@code userId} died with the given length; it counts towards the length PR.
+     */
+    public void recordDeath(Long userId, int length) {
+        events.add(new StatsEvent(userId, 0, length));
+    }
+
+    /**
+     * Applies all events recorded so far in a new transaction that commits before this method
+     * returns, even if the caller's transaction rolls back later.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            Map<Long, StatsEvent> pending = new HashMap<>();
+            StatsEvent event;
+            while ((event = events.poll()) != null) {
+                pending.merge(event.userId, event, StatsEvent::merge);
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+            List<User> users;
+            try {
+                users = transactionTemplate.execute(status -> apply(pending));
+            }
+            catch (RuntimeException e) {
+                // zurueck in die Warteschlange, der naechste flush fasst sie mit neuen Ereignissen zusammen
+                events.addAll(pending.values());
+                throw e;
+            }
+            // Kills und Laengen-PR werden in der Bestenliste angezeigt
+            leaderboardIndex.updateAll(users);
+        }
+    }
+
+    int getPendingEvents() {
+        return events.size();
+    }
+
+    private List<User> apply(Map<Long, StatsEvent> pending) {
+        List<User> users = userRepository.findAllById(pending.keySet());
+        for (User user : users) {
+            StatsEvent stats = pending.get(user.getId());
+            user.setKills(user.getKills() + stats.kills);
+            if (user.getLengthPR() < stats.length) {
+                user.setLengthPR(stats.length);
+            }
+        }
+        userRepository.saveAll(users);
+        userRepository.flush();
+        return users;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        }
+        catch (RuntimeException e) {
+            // flush() hat den Batch wieder eingereiht, der naechste Lauf versucht es erneut
+            logger.error("Writing game stats failed", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdownNow();
+        flushQuietly();
+    }
+
+    private static final class StatsEvent {
+        private final Long userId;
+        private final int kills;
+        private final int length;
+
+        private StatsEvent(Long userId, int kills, int length) {
+            this.userId = userId;
+            this.kills = kills;
+            this.length = length;
+        }
+
+        private StatsEvent merge(StatsEvent other) {
+            return new StatsEvent(userId, kills + other.kills, Math.max(length, other.length));
+        }
+    }
+}
@@ -7,6 +7,8 @@ import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -34,10 +36,21 @@ public class UserService {
   private final Logger log = LoggerFactory.getLogger(UserService.class);
 
   private final UserRepository userRepository;
+  private final LeaderboardIndex leaderboardIndex;
 
   // @Autowired
-  public UserService(@Qualifier("userRepository") UserRepository userRepository) {
+  public UserService(@Qualifier("userRepository") UserRepository userRepository, LeaderboardIndex leaderboardIndex) {
     this.userRepository = userRepository;
+    this.leaderboardIndex = leaderboardIndex;
+  }
+
+  /**
+   * Fills the leaderboard index with all users once the application is up.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void loadLeaderboard() {
+    leaderboardIndex.rebuild(userRepository.findAll());
+    log.info("Leaderboard index loaded with {} users", leaderboardIndex.size());
   }
 
   public List<User> getUsers() {
@@ -61,20 +74,16 @@ public class UserService {
     // flush() is called
     newUser = userRepository.save(newUser);
     userRepository.flush();
+    leaderboardIndex.update(newUser);
 
     log.debug("Created Information for User: {}", newUser);
     return newUser;
   }
     public int getUserRankInLeaderboard(Long userId) {
-        // Hole alle Benutzer, sortiert nach Level und WinRate
-        List<User> allUsers = userRepository.findAllByOrderByLevelDescWinRateDesc();
-
-        // Finde den Index des gesuchten Benutzers
-        for (int i = 0; i < allUsers.size(); i++) {
-            if (allUsers.get(i).getId().equals(userId)) {
-                // Index + 1, da Ränge bei 1 beginnen, nicht bei 0
-                return i + 1;
-            }
+        // Rang aus dem Leaderboard-Index, O(log n) statt alle Benutzer zu laden
+        int rank = leaderboardIndex.rank(userId);
+        if (rank > 0) {
+            return rank;
         }
 
         // Wenn der Benutzer nicht gefunden wurde, werfe eine Exception
@@ -83,12 +92,15 @@ public class UserService {
 
 
     public List<User> getTopPlayersByLevel(int limit) {
-        // Wir begrenzen die Anzahl der zurückgegebenen Benutzer auf den angegebenen Wert
-        List<User> allUsers = userRepository.findTop10ByOrderByLevelDescWinRateDesc();
-        if (allUsers.size() > limit) {
-            return allUsers.subList(0, limit);
-        }
-        return allUsers;
+        // Die besten Spieler direkt aus dem Leaderboard-Index, ohne Datenbankabfrage
+        return leaderboardIndex.top(limit);
+    }
+
+    /**
+     * Changes whenever a committed result could change the global top list.
+     */
+    public long getLeaderboardVersion() {
+        return leaderboardIndex.getTopVersion();
     }
 
         public User loginUser(String username, String password) {
@@ -199,6 +211,7 @@ public class UserService {
 
     bot = userRepository.save(bot);
     userRepository.flush();
+    leaderboardIndex.update(bot);
 
     return bot;
   }
@@ -207,6 +220,7 @@ public class UserService {
     if (userOptional.isPresent()) {
         // Delete the user from the repository
         userRepository.deleteById(user.getId());
+        leaderboardIndex.remove(user.getId());
     } 
   }
 }
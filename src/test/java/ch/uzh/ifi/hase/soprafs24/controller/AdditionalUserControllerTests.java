@@ -11,6 +11,8 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
@@ -31,10 +33,12 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.BDDMockito.given;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(UserController.class)
+@Import(LeaderboardCache.class)
 public class AdditionalUserControllerTests {
 
     @Autowired
@@ -143,16 +147,45 @@ public class AdditionalUserControllerTests {
     @Test
     public void getLeaderboard_success() throws Exception {
         // given
+        Mockito.when(userService.getLeaderboardVersion()).thenReturn(1L);
         Mockito.when(userService.getTopPlayersByLevel(10)).thenReturn(testLeaderboardUsers);
 
         // when/then
         mockMvc.perform(MockMvcRequestBuilders.get("/leaderboard")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
                 .andExpect(jsonPath("$", hasSize(5)))
                 .andExpect(jsonPath("$[0].username").value("player1"));
     }
 
+    @Test
+    public void getLeaderboard_cachedUntilVersionChanges_andAnswers304() throws Exception {
+        // given
+        Mockito.when(userService.getLeaderboardVersion()).thenReturn(2L);
+        Mockito.when(userService.getTopPlayersByLevel(10)).thenReturn(testLeaderboardUsers);
+
+        String eTag = mockMvc.perform(MockMvcRequestBuilders.get("/leaderboard"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // same version: served from the cache, a polling client with the ETag gets 304
+        mockMvc.perform(MockMvcRequestBuilders.get("/leaderboard")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag));
+        Mockito.verify(userService, Mockito.times(1)).getTopPlayersByLevel(10);
+
+        // a committed result changed the top list
+        Mockito.when(userService.getLeaderboardVersion()).thenReturn(3L);
+        Mockito.when(userService.getTopPlayersByLevel(10)).thenReturn(testLeaderboardUsers.subList(0, 2));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/leaderboard")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)));
+    }
+
     @Test
     public void getLeaderboardRank_validUserId_success() throws Exception {
         // given
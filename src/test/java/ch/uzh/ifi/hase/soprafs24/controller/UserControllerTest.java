@@ -48,6 +48,9 @@ public class UserControllerTest {
   @MockBean
   private UserService userService;
 
+  @MockBean
+  private LeaderboardCache leaderboardCache;
+
   private User testUser;
 
   @BeforeEach
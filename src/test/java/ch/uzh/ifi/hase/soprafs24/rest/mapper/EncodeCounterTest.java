@@ -0,0 +1,42 @@
+package ch.uzh.ifi.hase.soprafs24.handler;
+
+import ch.uzh.ifi.hase.soprafs24.entity.Game;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EncodeCounterTest {
+
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(Game.TICK_MILLIS);
+
+    @Test
+    public void record_countsPerTickWindow() {
+        EncodeCounter counter = new EncodeCounter();
+        long start = 100 * TICK;
+
+        counter.record(start);
+        counter.record(start + 1);
+        counter.record(start + 2);
+        assertEquals(0, counter.getLastTick(start + 3));
+
+        counter.record(start + TICK);
+        assertEquals(3, counter.getLastTick(start + TICK + 1));
+        assertEquals(1, counter.getLastTick(start + 2 * TICK));
+        assertEquals(4, counter.getTotal());
+        assertEquals(3, counter.getMaxPerTick());
+    }
+
+    @Test
+    public void getLastTick_afterIdleWindows_isZero() {
+        EncodeCounter counter = new EncodeCounter();
+        long start = 100 * TICK;
+
+        counter.record(start);
+        counter.record(start + 1);
+
+        assertEquals(0, counter.getLastTick(start + 3 * TICK));
+        assertEquals(2, counter.getTotal());
+    }
+}
@@ -0,0 +1,175 @@
+package ch.uzh.ifi.hase.soprafs24.handler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class OutboundSessionTest {
+
+    private final ExecutorService sender = Executors.newCachedThreadPool();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        sender.shutdownNow();
+    }
+
+    // der Delegate blockiert, bis release geoeffnet wird, wie ein Client mit vollem TCP-Puffer
+    private WebSocketSession blockingDelegate() throws Exception {
+        WebSocketSession delegate = mock(WebSocketSession.class);
+        when(delegate.isOpen()).thenReturn(true);
+        when(delegate.getId()).thenReturn("slow");
+        doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            sent.add(((TextMessage) invocation.getArgument(0)).getPayload());
+            return null;
+        }).when(delegate).sendMessage(any());
+        return delegate;
+    }
+
+    @Test
+    public void sendMessage_doesNotBlockAndKeepsOrder() throws Exception {
+        OutboundSession session = new OutboundSession(blockingDelegate(), sender, 5000, 1024);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            session.sendMessage(new TextMessage("m" + i));
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertTrue(session.getBufferedBytes() > 0);
+        assertTrue(sent.isEmpty());
+
+        release.countDown();
+        for (int i = 0; i < 100 && sent.size() < 10; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(List.of("m0", "m1", "m2", "m3", "m4", "m5", "m6", "m7", "m8", "m9"), sent);
+        assertEquals(0, session.getBufferedBytes());
+        assertFalse(session.isLimitExceeded());
+    }
+
+    @Test
+    public void sendLatest_replacesQueuedFrameAndKeepsControlOrder() throws Exception {
+        OutboundSession session = new OutboundSession(blockingDelegate(), sender, 5000, 64);
+
+        session.sendMessage(new TextMessage("lobby"));
+        assertFalse(session.sendLatest(new TextMessage("frame0")));
+        for (int i = 1; i < 20; i++) {
+            // der wartende Frame wird ersetzt, der Client verpasst ihn
+            assertTrue(session.sendLatest(new TextMessage("frame" + i)));
+        }
+        session.sendMessage(new TextMessage("gameEnd"));
+        assertTrue(session.sendLatest(new TextMessage("frame20")));
+
+        // nur ein Frame wartet, das Byte-Limit wird trotz 21 Frames nicht erreicht
+        assertFalse(session.isLimitExceeded());
+
+        release.countDown();
+        for (int i = 0; i < 100 && sent.size() < 3; i++) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(20);
+        assertEquals(List.of("lobby", "gameEnd", "frame20"), sent);
+        assertEquals(0, session.getBufferedBytes());
+    }
+
+    @Test
+    public void sendMessage_binaryFrameConsumedBySend_releasesBufferedBytes() throws Exception {
+        WebSocketSession delegate = mock(WebSocketSession.class);
+        when(delegate.isOpen()).thenReturn(true);
+        // wie Tomcat: das Senden liest den Puffer bis zum Ende
+        doAnswer(invocation -> {
+            ByteBuffer payload = ((BinaryMessage) invocation.getArgument(0)).getPayload();
+            payload.position(payload.limit());
+            return null;
+        }).when(delegate).sendMessage(any());
+        OutboundSession session = new OutboundSession(delegate, sender, 5000, 64);
+
+        // zusammen mehr als das Limit, aber immer nur einer in der Warteschlange
+        for (int i = 0; i < 3; i++) {
+            session.sendMessage(new BinaryMessage(new byte[40]));
+            assertTrue(waitUntilDrained(session));
+        }
+
+        verify(delegate, times(3)).sendMessage(any());
+        assertFalse(session.isLimitExceeded());
+    }
+
+    private static boolean waitUntilDrained(OutboundSession session) throws InterruptedException {
+        for (int i = 0; i < 100 && session.getBufferedBytes() != 0; i++) {
+            Thread.sleep(10);
+        }
+        return session.getBufferedBytes() == 0;
+    }
+
+    @Test
+    public void sendMessage_bufferLimitClosesSession() throws Exception {
+        WebSocketSession delegate = blockingDelegate();
+        OutboundSession session = new OutboundSession(delegate, sender, 5000, 20);
+
+        session.sendMessage(new TextMessage("0123456789"));
+        session.sendMessage(new TextMessage("0123456789"));
+        session.sendMessage(new TextMessage("0123456789"));
+
+        assertTrue(session.isLimitExceeded());
+        verify(delegate, timeout(1000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        // weitere Nachrichten werden verworfen
+        session.sendMessage(new TextMessage("x"));
+        release.countDown();
+        Thread.sleep(50);
+        assertFalse(sent.contains("x"));
+    }
+
+    @Test
+    public void sendMessage_sendTimeLimitClosesSession() throws Exception {
+        WebSocketSession delegate = blockingDelegate();
+        OutboundSession session = new OutboundSession(delegate, sender, 20, 1024);
+
+        session.sendMessage(new TextMessage("first"));
+        Thread.sleep(100);
+        session.sendMessage(new TextMessage("second"));
+
+        assertTrue(session.isLimitExceeded());
+        verify(delegate, timeout(1000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    @Test
+    public void sendTimeLimit_closesEvenIfAllSenderThreadsAreBlocked() throws Exception {
+        ExecutorService singleSender = Executors.newFixedThreadPool(1);
+        ExecutorService closer = Executors.newSingleThreadExecutor();
+        try {
+            WebSocketSession delegate = blockingDelegate();
+            OutboundSession session = new OutboundSession(delegate, singleSender, closer, 20, 1024);
+
+            // der einzige Sender-Thread haengt in diesem Sendevorgang
+            session.sendMessage(new TextMessage("first"));
+            Thread.sleep(100);
+            session.sendMessage(new TextMessage("second"));
+
+            assertTrue(session.isLimitExceeded());
+            verify(delegate, timeout(1000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        }
+        finally {
+            release.countDown();
+            singleSender.shutdownNow();
+            closer.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ch.uzh.ifi.hase.soprafs24.handler;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class TokenHandshakeInterceptorTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final TokenHandshakeInterceptor interceptor = new TokenHandshakeInterceptor(userRepository);
+    private final ServerHttpResponse response = mock(ServerHttpResponse.class);
+
+    private ServerHttpRequest request(String uri) throws Exception {
+        ServerHttpRequest request = mock(ServerHttpRequest.class);
+        when(request.getURI()).thenReturn(new URI(uri));
+        return request;
+    }
+
+    @Test
+    public void beforeHandshake_knownToken_storesIdentity() throws Exception {
+        User user = new User();
+        user.setId(7L);
+        user.setUsername("alice");
+        user.setToken("abc");
+        user.setLobbyCode(3L);
+        when(userRepository.findByToken("abc")).thenReturn(user);
+        Map<String, Object> attributes = new HashMap<>();
+
+        assertTrue(interceptor.beforeHandshake(request("ws://localhost/ws?token=abc&x=1"), response, null, attributes));
+
+        assertEquals(7L, attributes.get(TokenHandshakeInterceptor.USER_ID));
+        assertEquals("alice", attributes.get(TokenHandshakeInterceptor.USERNAME));
+        assertEquals(false, attributes.get(TokenHandshakeInterceptor.IS_BOT));
+        assertEquals(3L, attributes.get(TokenHandshakeInterceptor.LOBBY_CODE));
+        verifyNoInteractions(response);
+    }
+
+    @Test
+    public void beforeHandshake_unknownOrMissingToken_rejected() throws Exception {
+        Map<String, Object> attributes = new HashMap<>();
+
+        assertFalse(interceptor.beforeHandshake(request("ws://localhost/ws?token=nope"), response, null, attributes));
+        assertFalse(interceptor.beforeHandshake(request("ws://localhost/ws"), response, null, attributes));
+
+        verify(response, times(2)).setStatusCode(HttpStatus.UNAUTHORIZED);
+        assertTrue(attributes.isEmpty());
+    }
+}
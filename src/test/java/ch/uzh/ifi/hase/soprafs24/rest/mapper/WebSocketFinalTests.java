@@ -32,6 +32,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -89,11 +90,19 @@ public class WebSocketFinalTests {
         when(session.getAttributes()).thenReturn(attributes);
     }
 
+    // legt die Attribute an, die der TokenHandshakeInterceptor beim Handshake setzt
+    private void authenticate(User user) {
+        session.getAttributes().put(TokenHandshakeInterceptor.USER_ID, user.getId());
+        session.getAttributes().put(TokenHandshakeInterceptor.USERNAME, user.getUsername());
+        session.getAttributes().put(TokenHandshakeInterceptor.IS_BOT, user.getIsBot());
+        session.getAttributes().put(TokenHandshakeInterceptor.LOBBY_CODE, user.getLobbyCode());
+        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+    }
+
     // Test case for lines 95-97: Connection error handling
     @Test
     void testAfterConnectionEstablishedWithError() throws Exception {
-        // Setup to trigger exception
-        when(userRepository.findByToken("test-token")).thenThrow(new RuntimeException("Database error"));
+        // Setup to trigger exception: the session has no identity from the handshake
         
         // Execute
         webSocketHandler.afterConnectionEstablished(session);
@@ -129,7 +138,7 @@ public class WebSocketFinalTests {
         testUser.setId(1L);
         testUser.setToken("test-token");
         
-        when(userService.getUserByToken("test-token")).thenReturn(testUser);
+        authenticate(testUser);
         when(lobbyService.createPrivateLobby(testUser)).thenThrow(new RuntimeException("Lobby creation failed"));
         
         // Create test message
@@ -155,7 +164,7 @@ public class WebSocketFinalTests {
         Lobby fullLobby = new Lobby();
         fullLobby.setId(100L);
         
-        when(userService.getUserByToken("test-token")).thenReturn(testUser);
+        authenticate(testUser);
         when(lobbyService.validateLobby(100L)).thenReturn(false);
         when(lobbyRepository.findById(100L)).thenReturn(java.util.Optional.of(fullLobby));
         
@@ -188,7 +197,7 @@ public class WebSocketFinalTests {
         testUser.setId(1L);
         testUser.setToken("test-token");
         
-        when(userService.getUserByToken("test-token")).thenReturn(testUser);
+        authenticate(testUser);
         when(lobbyService.validateLobby(100L)).thenReturn(false);
         when(lobbyRepository.findById(100L)).thenReturn(java.util.Optional.empty());
         
@@ -225,7 +234,7 @@ public class WebSocketFinalTests {
         Lobby testLobby = new Lobby();
         testLobby.setId(100L);
         
-        when(userService.getUserByToken("test-token")).thenReturn(testUser);
+        authenticate(testUser);
         when(lobbyService.getLobbyById(100L)).thenReturn(testLobby);
         doThrow(new RuntimeException("Settings update error")).when(lobbyService).getLobbyById(100L);
         
@@ -267,7 +276,7 @@ public class WebSocketFinalTests {
         testLobby.addParticipantId(1L);
         testLobby.setSolo(false);
         
-        when(userService.getUserByToken("test-token")).thenReturn(testUser);
+        authenticate(testUser);
         when(lobbyService.getLobbyById(100L)).thenReturn(testLobby);
         
         // Create test message
@@ -307,7 +316,7 @@ public class WebSocketFinalTests {
         Lobby testLobby = new Lobby();
         testLobby.setId(100L);
         
-        when(userService.getUserByToken("test-token")).thenReturn(testUser);
+        authenticate(testUser);
         when(lobbyService.getLobbyById(100L)).thenReturn(testLobby);
         
         // Create test message
@@ -344,7 +353,7 @@ public class WebSocketFinalTests {
         testUser.setId(1L);
         testUser.setToken("test-token");
         
-        when(userService.getUserByToken("test-token")).thenReturn(testUser);
+        authenticate(testUser);
         when(lobbyService.handleQuickPlay(testUser)).thenThrow(new RuntimeException("QuickPlay error"));
         
         // Create test message
@@ -375,7 +384,7 @@ public class WebSocketFinalTests {
         testUser.setId(1L);
         testUser.setToken("test-token");
         
-        when(userService.getUserByToken("test-token")).thenReturn(testUser);
+        authenticate(testUser);
         when(lobbyService.createPrivateLobby(testUser)).thenThrow(new RuntimeException("Solo lobby error"));
         
         // Create test message
@@ -74,8 +74,7 @@ public class WebSocketHandlerExceptionTest {
     
     @Test
     void testAfterConnectionEstablished_InvalidToken() throws Exception {
-        // Setup - Token returns null user
-        when(userRepository.findByToken("test-token")).thenReturn(null);
+        // Setup - no identity attributes, the handshake did not resolve a user
         
         // Execute
         webSocketHandler.afterConnectionEstablished(session);
@@ -87,14 +86,15 @@ public class WebSocketHandlerExceptionTest {
     
     @Test
     void testAfterConnectionEstablished_Exception() throws Exception {
-        // Setup - Throw exception when trying to find user
-        when(userRepository.findByToken("test-token")).thenThrow(new RuntimeException("Database error"));
+        // Setup - Throw exception when sending the confirmation
+        session.getAttributes().put(TokenHandshakeInterceptor.USER_ID, 1L);
+        doThrow(new IOException("Broken pipe")).doNothing().when(session).sendMessage(any(TextMessage.class));
         
         // Execute
         webSocketHandler.afterConnectionEstablished(session);
         
         // Verify error handling
-        verify(session).sendMessage(any(TextMessage.class));
+        verify(session, times(2)).sendMessage(any(TextMessage.class));
         verify(session).close();
     }
     
@@ -113,9 +113,6 @@ public class WebSocketHandlerExceptionTest {
     
     @Test
     void testHandleTextMessage_CreateLobby_NullUser() throws Exception {
-        // Setup
-        when(userService.getUserByToken("test-token")).thenReturn(null);
-        
         // Create test message
         ObjectNode requestBody = objectMapper.createObjectNode();
         requestBody.put("type", "create_lobby");
@@ -130,9 +127,6 @@ public class WebSocketHandlerExceptionTest {
     
     @Test
     void testHandleTextMessage_ValidateLobby_NullUser() throws Exception {
-        // Setup
-        when(userService.getUserByToken("test-token")).thenReturn(null);
-        
         // Create test message
         ObjectNode requestBody = objectMapper.createObjectNode();
         requestBody.put("type", "validateLobby");
@@ -148,9 +142,6 @@ public class WebSocketHandlerExceptionTest {
     
     @Test
     void testHandleTextMessage_LobbySettings_NullUser() throws Exception {
-        // Setup
-        when(userService.getUserByToken("test-token")).thenReturn(null);
-        
         // Create test message
         ObjectNode requestBody = objectMapper.createObjectNode();
         requestBody.put("type", "lobbySettings");
@@ -168,9 +159,6 @@ public class WebSocketHandlerExceptionTest {
     
     @Test
     void testHandleTextMessage_StartGame_NullUser() throws Exception {
-        // Setup
-        when(userService.getUserByToken("test-token")).thenReturn(null);
-        
         // Create test message
         ObjectNode requestBody = objectMapper.createObjectNode();
         requestBody.put("type", "startGame");
@@ -190,9 +178,6 @@ public class WebSocketHandlerExceptionTest {
     
     @Test
     void testHandleTextMessage_LobbyState_NullUser() throws Exception {
-        // Setup
-        when(userService.getUserByToken("test-token")).thenReturn(null);
-        
         // Create test message
         ObjectNode requestBody = objectMapper.createObjectNode();
         requestBody.put("type", "lobbystate");
@@ -207,9 +192,6 @@ public class WebSocketHandlerExceptionTest {
     
     @Test
     void testHandleTextMessage_PlayerMove_NullUser() throws Exception {
-        // Setup
-        when(userService.getUserByToken("test-token")).thenReturn(null);
-        
         // Create test message
         ObjectNode requestBody = objectMapper.createObjectNode();
         requestBody.put("type", "playerMove");
@@ -225,9 +207,6 @@ public class WebSocketHandlerExceptionTest {
     
     @Test
     void testHandleTextMessage_QuickPlay_NullUser() throws Exception {
-        // Setup
-        when(userService.getUserByToken("test-token")).thenReturn(null);
-        
         // Create test message
         ObjectNode requestBody = objectMapper.createObjectNode();
         requestBody.put("type", "quickPlay");
@@ -242,9 +221,6 @@ public class WebSocketHandlerExceptionTest {
     
     @Test
     void testHandleTextMessage_SoloLobby_NullUser() throws Exception {
-        // Setup
-        when(userService.getUserByToken("test-token")).thenReturn(null);
-        
         // Create test message
         ObjectNode requestBody = objectMapper.createObjectNode();
         requestBody.put("type", "soloLobby");
@@ -13,6 +13,11 @@ import ch.uzh.ifi.hase.soprafs24.service.GameService;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -20,6 +25,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Spy;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
@@ -34,6 +40,7 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -83,6 +90,15 @@ public class WebSocketHandlerExtendedTest {
         when(session.getAttributes()).thenReturn(attributes);
         when(session.isOpen()).thenReturn(true);
     }
+
+    // legt die Attribute an, die der TokenHandshakeInterceptor beim Handshake setzt
+    private void authenticate(User user) {
+        session.getAttributes().put(TokenHandshakeInterceptor.USER_ID, user.getId());
+        session.getAttributes().put(TokenHandshakeInterceptor.USERNAME, user.getUsername());
+        session.getAttributes().put(TokenHandshakeInterceptor.IS_BOT, user.getIsBot());
+        session.getAttributes().put(TokenHandshakeInterceptor.LOBBY_CODE, user.getLobbyCode());
+        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+    }
     
     @Test
     void testBroadcastToLobby() throws Exception {
@@ -98,7 +114,7 @@ public class WebSocketHandlerExtendedTest {
         testLobby.addParticipantId(1L);
         testLobby.addParticipantId(2L);
         
-        when(lobbyService.getLobbyById(100L)).thenReturn(testLobby);
+        when(lobbyService.getParticipantIds(100L)).thenReturn(testLobby.getParticipantIds());
         
         // Create mock sessions for both users
         WebSocketSession user1Session = mock(WebSocketSession.class);
@@ -126,6 +142,170 @@ public class WebSocketHandlerExtendedTest {
             verify(user2Session).sendMessage(any(TextMessage.class));
         }
     }
+
+    @Test
+    void testBroadcastToLobby_encodesOnceAndSharesFrame() throws Exception {
+        Lobby testLobby = new Lobby();
+        testLobby.setId(100L);
+        testLobby.addParticipantId(1L);
+        testLobby.addParticipantId(2L);
+        testLobby.addParticipantId(3L);
+        when(lobbyService.getParticipantIds(100L)).thenReturn(testLobby.getParticipantIds());
+
+        WebSocketSession user1Session = mock(WebSocketSession.class);
+        WebSocketSession user2Session = mock(WebSocketSession.class);
+        when(user1Session.isOpen()).thenReturn(true);
+        when(user2Session.isOpen()).thenReturn(true);
+
+        try (MockedStatic<WebSocketHandler> mockedStatic = mockStatic(WebSocketHandler.class)) {
+            mockedStatic.when(() -> WebSocketHandler.getSessionByUserId(1L)).thenReturn(user1Session);
+            mockedStatic.when(() -> WebSocketHandler.getSessionByUserId(2L)).thenReturn(user2Session);
+            mockedStatic.when(() -> WebSocketHandler.getSessionByUserId(3L)).thenReturn(null);
+
+            ObjectNode message = objectMapper.createObjectNode();
+            message.put("type", "gameState");
+            long encodesBefore = webSocketHandler.getEncodeCounter().getTotal();
+
+            webSocketHandler.broadcastToLobby(100L, message);
+
+            ArgumentCaptor<TextMessage> frame1 = ArgumentCaptor.forClass(TextMessage.class);
+            ArgumentCaptor<TextMessage> frame2 = ArgumentCaptor.forClass(TextMessage.class);
+            verify(user1Session).sendMessage(frame1.capture());
+            verify(user2Session).sendMessage(frame2.capture());
+            assertSame(frame1.getValue(), frame2.getValue());
+            assertEquals("{\"type\":\"gameState\"}", frame1.getValue().getPayload());
+            assertEquals(encodesBefore + 1, webSocketHandler.getEncodeCounter().getTotal());
+        }
+    }
+
+    @Test
+    void testBroadcastToLobby_binarySessionGetsBinaryFrame() throws Exception {
+        Lobby testLobby = new Lobby();
+        testLobby.setId(100L);
+        testLobby.addParticipantId(1L);
+        testLobby.addParticipantId(2L);
+        when(lobbyService.getParticipantIds(100L)).thenReturn(testLobby.getParticipantIds());
+
+        WebSocketSession jsonSession = mock(WebSocketSession.class);
+        WebSocketSession binarySession = mock(WebSocketSession.class);
+        when(jsonSession.isOpen()).thenReturn(true);
+        when(binarySession.isOpen()).thenReturn(true);
+        when(binarySession.getAcceptedProtocol()).thenReturn(WebSocketHandler.BINARY_PROTOCOL);
+
+        try (MockedStatic<WebSocketHandler> mockedStatic = mockStatic(WebSocketHandler.class)) {
+            mockedStatic.when(() -> WebSocketHandler.getSessionByUserId(1L)).thenReturn(jsonSession);
+            mockedStatic.when(() -> WebSocketHandler.getSessionByUserId(2L)).thenReturn(binarySession);
+
+            ObjectNode message = objectMapper.createObjectNode();
+            message.put("type", "gameState");
+
+            webSocketHandler.broadcastToLobby(100L, () -> objectMapper.writeValueAsBytes(message), () -> new byte[]{1, 2, 3});
+
+            verify(jsonSession).sendMessage(any(TextMessage.class));
+            ArgumentCaptor<BinaryMessage> binary = ArgumentCaptor.forClass(BinaryMessage.class);
+            verify(binarySession).sendMessage(binary.capture());
+            assertEquals(3, binary.getValue().getPayloadLength());
+            assertEquals(2, webSocketHandler.getEncodeCounter().getTotal());
+        }
+    }
+
+    // sendet sofort und merkt sich die Payloads; mit einem Latch haengt er wie ein langsamer Client
+    private WebSocketSession recordingDelegate(List<String> sent, CountDownLatch release) throws Exception {
+        WebSocketSession delegate = mock(WebSocketSession.class);
+        when(delegate.isOpen()).thenReturn(true);
+        doAnswer(invocation -> {
+            if (release != null) {
+                release.await(5, TimeUnit.SECONDS);
+            }
+            sent.add(((TextMessage) invocation.getArgument(0)).getPayload());
+            return null;
+        }).when(delegate).sendMessage(any());
+        return delegate;
+    }
+
+    @Test
+    void testBroadcastToLobby_onlyLaggingSessionGetsKeyframe() throws Exception {
+        when(lobbyService.getParticipantIds(100L)).thenReturn(List.of(1L, 2L));
+        List<String> laggingSent = new CopyOnWriteArrayList<>();
+        List<String> healthySent = new CopyOnWriteArrayList<>();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService sender = Executors.newCachedThreadPool();
+        OutboundSession lagging = new OutboundSession(recordingDelegate(laggingSent, release), sender, 5000, 4096);
+        OutboundSession healthy = new OutboundSession(recordingDelegate(healthySent, null), sender, 5000, 4096);
+        List<String> keyframesEncoded = new ArrayList<>();
+
+        try (MockedStatic<WebSocketHandler> mockedStatic = mockStatic(WebSocketHandler.class)) {
+            mockedStatic.when(() -> WebSocketHandler.getSessionByUserId(1L)).thenReturn(lagging);
+            mockedStatic.when(() -> WebSocketHandler.getSessionByUserId(2L)).thenReturn(healthy);
+
+            // der Sender des langsamen Clients haengt, die Deltas stauen sich
+            lagging.sendMessage(new TextMessage("lobby"));
+            for (int frame = 1; frame <= 3; frame++) {
+                String number = String.valueOf(frame);
+                webSocketHandler.broadcastToLobby(100L, () -> ("delta" + number).getBytes(), null,
+                        () -> {
+                            keyframesEncoded.add(number);
+                            return ("keyframe" + number).getBytes();
+                        }, null);
+                // wie im Spiel-Loop: bis zum naechsten Tick hat der gesunde Client seinen Frame
+                for (int i = 0; i < 100 && healthySent.size() < frame; i++) {
+                    Thread.sleep(10);
+                }
+            }
+            release.countDown();
+            for (int i = 0; i < 100 && (laggingSent.size() < 2 || healthySent.size() < 3); i++) {
+                Thread.sleep(10);
+            }
+        }
+        finally {
+            release.countDown();
+            sender.shutdownNow();
+        }
+
+        assertEquals(List.of("delta1", "delta2", "delta3"), healthySent);
+        assertEquals(List.of("lobby", "keyframe3"), laggingSent);
+        assertEquals(List.of("2", "3"), keyframesEncoded);
+    }
+
+    @Test
+    void testHandleTextMessage_requestKeyframe_marksOnlyOwnSession() throws Exception {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("user1");
+        user.setLobbyCode(100L);
+        authenticate(user);
+        OutboundSession outbound = mock(OutboundSession.class);
+
+        try (MockedStatic<WebSocketHandler> mockedStatic = mockStatic(WebSocketHandler.class)) {
+            mockedStatic.when(() -> WebSocketHandler.getSessionByUserId(1L)).thenReturn(outbound);
+
+            webSocketHandler.handleTextMessage(session, new TextMessage("{\"type\":\"requestKeyframe\"}"));
+        }
+
+        verify(outbound).requestKeyframe();
+        verify(gameService, never()).requestKeyframe(any());
+    }
+
+    @Test
+    void testGetSubProtocols_offersBinaryProtocol() {
+        assertTrue(webSocketHandler.getSubProtocols().contains(WebSocketHandler.BINARY_PROTOCOL));
+    }
+
+    @Test
+    void testBroadcastToLobby_nobodyConnected_skipsEncoding() throws Exception {
+        Lobby testLobby = new Lobby();
+        testLobby.setId(100L);
+        testLobby.addParticipantId(1L);
+        when(lobbyService.getParticipantIds(100L)).thenReturn(testLobby.getParticipantIds());
+
+        try (MockedStatic<WebSocketHandler> mockedStatic = mockStatic(WebSocketHandler.class)) {
+            mockedStatic.when(() -> WebSocketHandler.getSessionByUserId(1L)).thenReturn(null);
+
+            webSocketHandler.broadcastToLobby(100L, objectMapper.createObjectNode());
+
+            assertEquals(0, webSocketHandler.getEncodeCounter().getTotal());
+        }
+    }
     
     @Test
     void testHandleTextMessage_LobbySettings() throws Exception {
@@ -142,7 +322,7 @@ public class WebSocketHandlerExtendedTest {
         testLobby.setPowerupsWanted(false);
         testLobby.setSugarRush(false);
         
-        when(userService.getUserByToken("test-token")).thenReturn(testUser);
+        authenticate(testUser);
         when(lobbyService.getLobbyById(100L)).thenReturn(testLobby);
         
         // Create test message
@@ -178,7 +358,7 @@ public class WebSocketHandlerExtendedTest {
         testLobby.setId(100L);
         testLobby.setAdminId(1L);
         
-        when(userService.getUserByToken("test-token")).thenReturn(testUser);
+        authenticate(testUser);
         when(lobbyService.handleQuickPlay(testUser)).thenReturn(testLobby);
         
         // Create test message
@@ -206,7 +386,7 @@ public class WebSocketHandlerExtendedTest {
         testLobby.setId(100L);
         testLobby.setAdminId(1L);
         
-        when(userService.getUserByToken("test-token")).thenReturn(testUser);
+        authenticate(testUser);
         when(lobbyService.createPrivateLobby(testUser)).thenReturn(testLobby);
         
         // Create test message
@@ -443,7 +623,7 @@ public class WebSocketHandlerExtendedTest {
         testLobby.addParticipantId(1L); // Only one player
         testLobby.setSolo(false); // Not solo mode
         
-        when(userService.getUserByToken("test-token")).thenReturn(testUser);
+        authenticate(testUser);
         when(lobbyService.getLobbyById(100L)).thenReturn(testLobby);
         
         // Create test message
@@ -478,7 +658,7 @@ public class WebSocketHandlerExtendedTest {
         testLobby.setId(100L);
         testLobby.setAdminId(1L);
         
-        when(userService.getUserByToken("test-token")).thenReturn(testUser);
+        authenticate(testUser);
         when(lobbyService.getLobbyById(100L)).thenReturn(testLobby);
         
         // Create test message with missing settings
@@ -502,7 +682,7 @@ public class WebSocketHandlerExtendedTest {
         testUser.setId(1L);
         testUser.setToken("test-token");
         
-        when(userService.getUserByToken("test-token")).thenReturn(testUser);
+        authenticate(testUser);
         when(lobbyService.validateLobby(100L)).thenReturn(false);
         when(lobbyRepository.findById(100L)).thenReturn(java.util.Optional.empty());
         
@@ -529,7 +709,7 @@ public class WebSocketHandlerExtendedTest {
         Lobby fullLobby = new Lobby();
         fullLobby.setId(100L);
         
-        when(userService.getUserByToken("test-token")).thenReturn(testUser);
+        authenticate(testUser);
         when(lobbyService.validateLobby(100L)).thenReturn(false);
         when(lobbyRepository.findById(100L)).thenReturn(java.util.Optional.of(fullLobby));
         
@@ -561,7 +741,7 @@ public class WebSocketHandlerExtendedTest {
         testLobby.setPowerupsWanted(true);
         testLobby.setSugarRush(false);
         
-        when(userService.getUserByToken("test-token")).thenReturn(testUser);
+        authenticate(testUser);
         when(lobbyService.getLobbyById(100L)).thenReturn(testLobby);
         
         // Create test message
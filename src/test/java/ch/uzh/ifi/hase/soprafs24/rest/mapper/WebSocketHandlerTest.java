@@ -1,8 +1,10 @@
 package ch.uzh.ifi.hase.soprafs24.handler;
 
+import ch.uzh.ifi.hase.soprafs24.constant.Direction;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
 import ch.uzh.ifi.hase.soprafs24.entity.Lobby;
 import ch.uzh.ifi.hase.soprafs24.entity.Game;
+import ch.uzh.ifi.hase.soprafs24.entity.Snake;
 import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
 import ch.uzh.ifi.hase.soprafs24.repository.LobbyRepository;
 import ch.uzh.ifi.hase.soprafs24.service.LobbyService;
@@ -29,6 +31,7 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -77,24 +80,59 @@ public class WebSocketHandlerTest {
         Map<String, Object> attributes = new HashMap<>();
         when(session.getAttributes()).thenReturn(attributes);
     }
-    
+
+    // legt die Attribute an, die der TokenHandshakeInterceptor beim Handshake setzt
+    private void authenticate(User user) {
+        session.getAttributes().put(TokenHandshakeInterceptor.USER_ID, user.getId());
+        session.getAttributes().put(TokenHandshakeInterceptor.USERNAME, user.getUsername());
+        session.getAttributes().put(TokenHandshakeInterceptor.IS_BOT, user.getIsBot());
+        session.getAttributes().put(TokenHandshakeInterceptor.LOBBY_CODE, user.getLobbyCode());
+    }
+
     @Test
     void testAfterConnectionEstablished() throws Exception {
         // Setup
         User testUser = new User();
         testUser.setId(1L);
         testUser.setToken("test-token");
-        
-        when(userRepository.findByToken("test-token")).thenReturn(testUser);
+        authenticate(testUser);
         
         // Execute
         webSocketHandler.afterConnectionEstablished(session);
         
         // Verify
         verify(session).sendMessage(any(TextMessage.class));
-        // Additional assertions could check exact message content
+        verifyNoInteractions(userRepository, userService);
     }
-    
+
+    @Test
+    void testAfterConnectionEstablished_withoutHandshakeIdentity_closesSession() throws Exception {
+        webSocketHandler.afterConnectionEstablished(session);
+
+        verify(session).sendMessage(argThat(message ->
+                ((TextMessage) message).getPayload().contains("\"type\":\"error\"")));
+        verify(session).close();
+        verifyNoInteractions(userRepository, userService);
+    }
+
+    @Test
+    void testHandleTextMessage_readOnlyHandler_doesNotLoadUser() throws Exception {
+        User testUser = new User();
+        testUser.setId(1L);
+        testUser.setLobbyCode(100L);
+        authenticate(testUser);
+        Lobby testLobby = new Lobby();
+        testLobby.setId(100L);
+        when(lobbyService.getLobbyById(100L)).thenReturn(testLobby);
+
+        ObjectNode requestBody = objectMapper.createObjectNode();
+        requestBody.put("type", "requestSettings");
+        webSocketHandler.handleTextMessage(session, new TextMessage(objectMapper.writeValueAsString(requestBody)));
+
+        verify(webSocketHandler).broadcastToLobby(eq(100L), any(ObjectNode.class));
+        verifyNoInteractions(userRepository, userService);
+    }
+
     @Test
     void testHandleTextMessage_CreateLobby() throws Exception {
         // Setup
@@ -106,7 +144,8 @@ public class WebSocketHandlerTest {
         testLobby.setId(100L);
         testLobby.setAdminId(1L);
         
-        when(userService.getUserByToken("test-token")).thenReturn(testUser);
+        authenticate(testUser);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
         when(lobbyService.createPrivateLobby(testUser)).thenReturn(testLobby);
         
         // Create test message
@@ -121,6 +160,7 @@ public class WebSocketHandlerTest {
         verify(lobbyService).createPrivateLobby(testUser);
         verify(lobbyService).addLobbyCodeToUser(testUser, 100L);
         verify(session).sendMessage(any(TextMessage.class));
+        assertEquals(100L, session.getAttributes().get(TokenHandshakeInterceptor.LOBBY_CODE));
     }
 
     @Test
@@ -133,7 +173,8 @@ public class WebSocketHandlerTest {
         Lobby testLobby = new Lobby();
         testLobby.setId(100L);
         
-        when(userService.getUserByToken("test-token")).thenReturn(testUser);
+        authenticate(testUser);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
         when(lobbyService.getLobbyById(100L)).thenReturn(testLobby);
         
         // Create test message
@@ -162,7 +203,7 @@ public class WebSocketHandlerTest {
         testLobby.setId(100L);
         testLobby.setAdminId(1L);
         
-        when(userService.getUserByToken("test-token")).thenReturn(testUser);
+        authenticate(testUser);
         when(lobbyService.getLobbyById(100L)).thenReturn(testLobby);
 
         // Create test message
@@ -193,7 +234,7 @@ public class WebSocketHandlerTest {
         testGame.setGameId(200L);
         
         when(gameService.createGame(testLobby, "Medium", false)).thenReturn(testGame);
-        when(userService.getUserByToken("test-token")).thenReturn(testUser);
+        authenticate(testUser);
         when(lobbyService.getLobbyById(100L)).thenReturn(testLobby);
 
         // Create test message
@@ -231,7 +272,7 @@ public class WebSocketHandlerTest {
             testGame.setGameId(200L);
             testGame.setLobby(testLobby);
             
-            when(userService.getUserByToken("test-token")).thenReturn(testUser);
+            authenticate(testUser);
             when(lobbyService.getLobbyById(100L)).thenReturn(testLobby);
             
             // Create test message before the MockedStatic block
@@ -252,7 +293,7 @@ public class WebSocketHandlerTest {
                 webSocketHandler.handleTextMessage(session, textMessage);
                 
                 // Verify within the MockedStatic scope
-                verify(gameService).respondToKeyInputs(testGame, testUser, "UP");
+                verify(gameService).respondToKeyInputs(testGame, 1L, Direction.UP);
             }
         } catch (Exception e) {
             System.err.println("Test failed with exception: " + e.getClass().getName());
@@ -261,6 +302,111 @@ public class WebSocketHandlerTest {
         }
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    void testHandleTextMessage_playerMove_boundSessionSkipsLookups() throws Exception {
+        Lobby testLobby = new Lobby();
+        testLobby.setId(100L);
+        Game testGame = new Game();
+        testGame.setLobby(testLobby);
+        Snake snake = new Snake();
+        snake.setUserId(1L);
+        testGame.addSnake(snake);
+
+        Field userSessionsField = WebSocketHandler.class.getDeclaredField("userSessions");
+        userSessionsField.setAccessible(true);
+        Map<Long, WebSocketSession> userSessions = (Map<Long, WebSocketSession>) userSessionsField.get(null);
+        userSessions.put(1L, session);
+        try {
+            webSocketHandler.bindPlayers(testGame);
+
+            ObjectNode requestBody = objectMapper.createObjectNode();
+            requestBody.put("type", "playerMove");
+            requestBody.put("direction", "UP");
+            webSocketHandler.handleTextMessage(session, new TextMessage(objectMapper.writeValueAsString(requestBody)));
+
+            verify(gameService).respondToKeyInputs(snake, Direction.UP);
+            verifyNoInteractions(userService, lobbyRepository);
+            verify(lobbyService, never()).getLobbyById(anyLong());
+        }
+        finally {
+            userSessions.remove(1L);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testHandleTextMessage_playerMove_boundSessionWithoutDirection_repliesWithError() throws Exception {
+        Lobby testLobby = new Lobby();
+        testLobby.setId(100L);
+        Game testGame = new Game();
+        testGame.setLobby(testLobby);
+        Snake snake = new Snake();
+        snake.setUserId(1L);
+        testGame.addSnake(snake);
+
+        Field userSessionsField = WebSocketHandler.class.getDeclaredField("userSessions");
+        userSessionsField.setAccessible(true);
+        Map<Long, WebSocketSession> userSessions = (Map<Long, WebSocketSession>) userSessionsField.get(null);
+        userSessions.put(1L, session);
+        try {
+            webSocketHandler.bindPlayers(testGame);
+
+            ObjectNode requestBody = objectMapper.createObjectNode();
+            requestBody.put("type", "playerMove");
+            assertDoesNotThrow(() -> webSocketHandler.handleTextMessage(session,
+                    new TextMessage(objectMapper.writeValueAsString(requestBody))));
+
+            verify(gameService, never()).respondToKeyInputs(any(Snake.class), any());
+            verify(session).sendMessage(argThat(message ->
+                    ((TextMessage) message).getPayload().contains("\"type\":\"error\"")));
+        }
+        finally {
+            userSessions.remove(1L);
+            webSocketHandler.unbindPlayers(testGame);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testHandleTextMessage_playerMove_afterGameEnd_notRoutedToFinishedGame() throws Exception {
+        Lobby testLobby = new Lobby();
+        testLobby.setId(100L);
+        Game testGame = new Game();
+        testGame.setLobby(testLobby);
+        Snake snake = new Snake();
+        snake.setUserId(1L);
+        testGame.addSnake(snake);
+
+        Field userSessionsField = WebSocketHandler.class.getDeclaredField("userSessions");
+        userSessionsField.setAccessible(true);
+        Map<Long, WebSocketSession> userSessions = (Map<Long, WebSocketSession>) userSessionsField.get(null);
+        userSessions.put(1L, session);
+        User testUser = new User();
+        testUser.setId(1L);
+        testUser.setLobbyCode(100L);
+        authenticate(testUser);
+        try {
+            webSocketHandler.bindPlayers(testGame);
+            // endGame gibt die Bindungen der Partie frei
+            webSocketHandler.unbindPlayers(testGame);
+
+            ObjectNode requestBody = objectMapper.createObjectNode();
+            requestBody.put("type", "playerMove");
+            requestBody.put("direction", "UP");
+            webSocketHandler.handleTextMessage(session, new TextMessage(objectMapper.writeValueAsString(requestBody)));
+
+            // the move takes the lookup path, which finds no running game for the lobby
+            verify(gameService, never()).respondToKeyInputs(any(Snake.class), any());
+            verify(webSocketHandler, never()).broadcastToLobby(eq(100L), any(ObjectNode.class));
+            verify(session).sendMessage(argThat(message ->
+                    ((TextMessage) message).getPayload().contains("\"type\":\"error\"")));
+        }
+        finally {
+            userSessions.remove(1L);
+        }
+    }
+
     @Test
     void testAfterConnectionClosed() throws Exception {
         // Setup
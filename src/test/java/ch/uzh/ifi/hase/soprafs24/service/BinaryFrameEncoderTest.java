@@ -0,0 +1,128 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.ItemKind;
+import ch.uzh.ifi.hase.soprafs24.entity.Board;
+import ch.uzh.ifi.hase.soprafs24.entity.Game;
+import ch.uzh.ifi.hase.soprafs24.entity.Powerups.Cookie;
+import ch.uzh.ifi.hase.soprafs24.entity.Snake;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryFrameEncoderTest {
+
+    private GameStateFrames frames;
+    private Game game;
+    private Snake snake;
+
+    @BeforeEach
+    public void setup() {
+        frames = new GameStateFrames();
+        game = new Game();
+        game.setTimestamp(150f);
+        snake = new Snake();
+        snake.setUsername("player");
+        snake.setCoordinates(new int[][]{{5, 5}, {4, 5}, {3, 5}});
+        game.addSnake(snake);
+        for (int x = 0; x < 20; x++) {
+            game.addItem(new Cookie(new int[]{x, 20}, "cookie"));
+        }
+    }
+
+    @Test
+    public void encode_keyframeLayout() {
+        frames.nextFrame(game, s -> List.of("Divider"));
+        Reader reader = new Reader(frames.encodeBinary());
+
+        assertEquals(BinaryFrameEncoder.KEYFRAME, reader.readByte());
+        assertEquals(0, reader.readVarint()); // frame
+        assertEquals(0, reader.readVarint()); // keyframe
+        assertEquals(150, reader.readVarint());
+        assertEquals(1, reader.readVarint());
+        assertEquals("player", reader.readString());
+        assertEquals(BinaryFrameEncoder.WHOLE_BODY, reader.readByte());
+        assertEquals(3, reader.readVarint());
+        assertEquals(Board.index(5, 5), reader.readVarint());
+        assertEquals(Board.index(4, 5), reader.readVarint());
+        assertEquals(Board.index(3, 5), reader.readVarint());
+        for (ItemKind kind : ItemKind.values()) {
+            int added = (int) reader.readVarint();
+            assertEquals(kind == ItemKind.COOKIE ? 20 : 0, added);
+            for (int i = 0; i < added; i++) {
+                assertEquals(Board.index(i, 20), reader.readVarint());
+            }
+            assertEquals(0, reader.readVarint());
+        }
+        assertEquals(1, reader.readVarint());
+        assertEquals("player", reader.readString());
+        assertEquals(1, reader.readVarint());
+        assertEquals("Divider", reader.readString());
+        assertTrue(reader.atEnd());
+    }
+
+    @Test
+    public void encode_deltaCarriesOnlyTheMove() throws Exception {
+        frames.nextFrame(game, s -> List.of());
+        byte[] keyframe = frames.encodeBinary();
+        snake.moveHead(6, 5, false);
+        frames.nextFrame(game, s -> List.of());
+        Reader reader = new Reader(frames.encodeBinary());
+
+        assertEquals(BinaryFrameEncoder.DELTA, reader.readByte());
+        assertEquals(1, reader.readVarint());
+        assertEquals(0, reader.readVarint());
+        reader.readVarint();
+        assertEquals(1, reader.readVarint());
+        assertEquals("player", reader.readString());
+        assertEquals(BinaryFrameEncoder.HEAD_AND_TAIL, reader.readByte());
+        assertEquals(1, reader.readVarint());
+        assertEquals(Board.index(6, 5), reader.readVarint());
+        assertEquals(1, reader.readVarint());
+
+        assertTrue(frames.encodeBinary().length < 40);
+        // schon der binaere Keyframe ist kleiner als die Cookie-Positionen allein als JSON
+        int[][] cookies = game.getItems().stream().map(item -> item.getPosition()).toArray(int[][]::new);
+        assertTrue(keyframe.length < new ObjectMapper().writeValueAsString(cookies).length());
+    }
+
+    private static final class Reader {
+        private final byte[] bytes;
+        private int position = 0;
+
+        private Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private byte readByte() {
+            return bytes[position++];
+        }
+
+        private long readVarint() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        private String readString() {
+            int length = (int) readVarint();
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        private boolean atEnd() {
+            return position == bytes.length;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package ch.uzh.ifi.hase.soprafs24.service;
 
+import ch.uzh.ifi.hase.soprafs24.constant.Curve;
+import ch.uzh.ifi.hase.soprafs24.constant.Direction;
 import ch.uzh.ifi.hase.soprafs24.entity.Game;
 import ch.uzh.ifi.hase.soprafs24.entity.Item;
 import ch.uzh.ifi.hase.soprafs24.entity.Powerdowns.Divider;
@@ -11,7 +13,6 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.ArrayList;
@@ -40,9 +41,9 @@ public class BotServiceTest {
         // Setup test snake
         testSnake = new Snake();
         testSnake.setUserId(1L);
-        testSnake.setDirection("RIGHT");
+        testSnake.setDirection(Direction.RIGHT);
         testSnake.setCoordinates(new int[][]{{10, 10}, {9, 10}, {8, 10}});
-        testSnake.setPreviousCurve("RIGHTCURVE");
+        testSnake.setPreviousCurve(Curve.RIGHTCURVE);
 
         // Setup test game
         testGame = new Game();
@@ -57,69 +58,19 @@ public class BotServiceTest {
         botService.updateBot(testGame, testSnake);
         
         // Verify the snake has a valid direction
-        assertTrue(Arrays.asList("UP", "DOWN", "LEFT", "RIGHT").contains(testSnake.getDirection()));
+        assertTrue(Arrays.asList(Direction.values()).contains(testSnake.getDirection()));
     }
     
-    @Test
-    public void newHeadHelper_allDirections() {
-        try {
-            Method method = BotService.class.getDeclaredMethod("newHeadHelper", String.class, int[][].class);
-            method.setAccessible(true);
-            
-            int[][] coords = {{10, 10}, {9, 10}, {8, 10}};
-            
-            // Test UP
-            int[] upResult = (int[]) method.invoke(botService, "UP", coords);
-            assertArrayEquals(new int[]{10, 9}, upResult);
-            
-            // Test DOWN
-            int[] downResult = (int[]) method.invoke(botService, "DOWN", coords);
-            assertArrayEquals(new int[]{10, 11}, downResult);
-            
-            // Test LEFT
-            int[] leftResult = (int[]) method.invoke(botService, "LEFT", coords);
-            assertArrayEquals(new int[]{9, 10}, leftResult);
-            
-            // Test RIGHT
-            int[] rightResult = (int[]) method.invoke(botService, "RIGHT", coords);
-            assertArrayEquals(new int[]{11, 10}, rightResult);
-            
-        } catch (Exception e) {
-            fail("Test failed: " + e.getMessage());
-        }
-    }
-    
-    @Test
-    public void newHeadHelper_invalidDirection() {
-        try {
-            Method method = BotService.class.getDeclaredMethod("newHeadHelper", String.class, int[][].class);
-            method.setAccessible(true);
-            
-            int[][] coords = {{10, 10}, {9, 10}, {8, 10}};
-            
-            // Test invalid direction
-            Exception exception = assertThrows(InvocationTargetException.class, () -> {
-                method.invoke(botService, "INVALID", coords);
-            });
-            
-            // Verify that the underlying exception is IllegalArgumentException
-            assertTrue(exception.getCause() instanceof IllegalArgumentException);
-            
-        } catch (Exception e) {
-            fail("Test setup failed: " + e.getMessage());
-        }
-    }
-
     @Test
     public void mapTwoDirectionsToCurve_basicCombinations() {
         try {
-            Method method = BotService.class.getDeclaredMethod("mapTwoDirectionsToCurve", Snake.class, String.class, String.class);
+            Method method = BotService.class.getDeclaredMethod("mapTwoDirectionsToCurve", Snake.class, Direction.class, Direction.class);
             method.setAccessible(true);
             
-            assertEquals("LEFTCURVE", method.invoke(botService, testSnake, "UP", "LEFT"));
-            assertEquals("RIGHTCURVE", method.invoke(botService, testSnake, "UP", "RIGHT"));
-            assertEquals("RIGHTCURVE", method.invoke(botService, testSnake, "DOWN", "LEFT"));
-            assertEquals("LEFTCURVE", method.invoke(botService, testSnake, "DOWN", "RIGHT"));
+            assertEquals(Curve.LEFTCURVE, method.invoke(botService, testSnake, Direction.UP, Direction.LEFT));
+            assertEquals(Curve.RIGHTCURVE, method.invoke(botService, testSnake, Direction.UP, Direction.RIGHT));
+            assertEquals(Curve.RIGHTCURVE, method.invoke(botService, testSnake, Direction.DOWN, Direction.LEFT));
+            assertEquals(Curve.LEFTCURVE, method.invoke(botService, testSnake, Direction.DOWN, Direction.RIGHT));
             
         } catch (Exception e) {
             fail("Test failed: " + e.getMessage());
@@ -129,13 +80,13 @@ public class BotServiceTest {
     @Test
     public void mapCurveToDirection_basicCombinations() {
         try {
-            Method method = BotService.class.getDeclaredMethod("mapCurveToDirection", String.class, String.class);
+            Method method = BotService.class.getDeclaredMethod("mapCurveToDirection", Curve.class, Direction.class);
             method.setAccessible(true);
             
-            assertEquals("LEFT", method.invoke(botService, "LEFTCURVE", "UP"));
-            assertEquals("RIGHT", method.invoke(botService, "LEFTCURVE", "DOWN"));
-            assertEquals("RIGHT", method.invoke(botService, "RIGHTCURVE", "UP"));
-            assertEquals("LEFT", method.invoke(botService, "RIGHTCURVE", "DOWN"));
+            assertEquals(Direction.LEFT, method.invoke(botService, Curve.LEFTCURVE, Direction.UP));
+            assertEquals(Direction.RIGHT, method.invoke(botService, Curve.LEFTCURVE, Direction.DOWN));
+            assertEquals(Direction.RIGHT, method.invoke(botService, Curve.RIGHTCURVE, Direction.UP));
+            assertEquals(Direction.LEFT, method.invoke(botService, Curve.RIGHTCURVE, Direction.DOWN));
             
         } catch (Exception e) {
             fail("Test failed: " + e.getMessage());
@@ -145,16 +96,16 @@ public class BotServiceTest {
     @Test
     public void availableMoves_basicScenario() {
         try {
-            Method method = BotService.class.getDeclaredMethod("availableMoves", Snake.class, Game.class, int[][].class, String.class);
+            Method method = BotService.class.getDeclaredMethod("availableMoves", Snake.class, Game.class, Direction.class);
             method.setAccessible(true);
             
             // Test if UP is available
-            boolean upAvailable = (boolean) method.invoke(botService, testSnake, testGame, testSnake.getCoordinates(), "UP");
+            boolean upAvailable = (boolean) method.invoke(botService, testSnake, testGame, Direction.UP);
             assertTrue(upAvailable);
             
             // Test if wall collision is detected
             testSnake.setCoordinates(new int[][]{{0, 10}, {1, 10}, {2, 10}});
-            boolean leftAvailable = (boolean) method.invoke(botService, testSnake, testGame, testSnake.getCoordinates(), "LEFT");
+            boolean leftAvailable = (boolean) method.invoke(botService, testSnake, testGame, Direction.LEFT);
             assertFalse(leftAvailable);
             
         } catch (Exception e) {
@@ -165,7 +116,7 @@ public class BotServiceTest {
     @Test
     public void availablePowerUpOrCookieMoves_withCookie() {
         try {
-            Method method = BotService.class.getDeclaredMethod("availablePowerUpOrCookieMoves", Snake.class, Game.class, int[][].class, String.class);
+            Method method = BotService.class.getDeclaredMethod("availablePowerUpOrCookieMoves", Snake.class, Game.class, Direction.class);
             method.setAccessible(true);
             
             // Add a cookie
@@ -174,11 +125,11 @@ public class BotServiceTest {
             testGame.addItem(cookie);
             
             // Test if UP leads to a cookie
-            boolean cookieUpward = (boolean) method.invoke(botService, testSnake, testGame, testSnake.getCoordinates(), "UP");
+            boolean cookieUpward = (boolean) method.invoke(botService, testSnake, testGame, Direction.UP);
             assertTrue(cookieUpward);
             
             // Test if RIGHT doesn't lead to a cookie
-            boolean cookieRightward = (boolean) method.invoke(botService, testSnake, testGame, testSnake.getCoordinates(), "RIGHT");
+            boolean cookieRightward = (boolean) method.invoke(botService, testSnake, testGame, Direction.RIGHT);
             assertFalse(cookieRightward);
             
         } catch (Exception e) {
@@ -189,11 +140,11 @@ public class BotServiceTest {
     @Test
     public void isGoingToPickUpPowerDown_basicTest() {
         try {
-            Method method = BotService.class.getDeclaredMethod("isGoingToPickUpPowerDown", Game.class, int[][].class, String.class);
+            Method method = BotService.class.getDeclaredMethod("isGoingToPickUpPowerDown", Game.class, Snake.class, Direction.class);
             method.setAccessible(true);
             
             // Test with no power-downs in game
-            boolean result = (boolean) method.invoke(botService, testGame, testSnake.getCoordinates(), "RIGHT");
+            boolean result = (boolean) method.invoke(botService, testGame, testSnake, Direction.RIGHT);
             assertFalse(result);
             
             // We can't easily test the positive case without knowing the exact structure
@@ -216,21 +167,21 @@ public void updateBot_withCookieAvailable() {
     botService.updateBot(testGame, testSnake);
     
     // Direction should be RIGHT to move toward the cookie
-    assertEquals("RIGHT", testSnake.getDirection());
+    assertEquals(Direction.RIGHT, testSnake.getDirection());
 }
 
 @Test
 public void updateBot_straightNotPossible() {
     // Create a snake that can't go straight
     testSnake.setCoordinates(new int[][]{{29, 10}, {28, 10}, {27, 10}}); // Right edge of grid
-    testSnake.setDirection("RIGHT"); // Can't go right anymore
-    testSnake.setPreviousCurve("RIGHTCURVE");
+    testSnake.setDirection(Direction.RIGHT); // Can't go right anymore
+    testSnake.setPreviousCurve(Curve.RIGHTCURVE);
     
     // Run update
     botService.updateBot(testGame, testSnake);
     
     // Direction should change since going straight isn't possible
-    assertNotEquals("RIGHT", testSnake.getDirection());
+    assertNotEquals(Direction.RIGHT, testSnake.getDirection());
 }
 
 @Test
@@ -242,7 +193,7 @@ public void updateBot_withPowerDown() {
     
     // Initial position and direction
     testSnake.setCoordinates(new int[][]{{10, 10}, {9, 10}, {8, 10}});
-    testSnake.setDirection("RIGHT"); // Direction would lead to power-down
+    testSnake.setDirection(Direction.RIGHT); // Direction would lead to power-down
     
     // Run update
     botService.updateBot(testGame, testSnake);
@@ -261,7 +212,7 @@ public void updateBot_probabilityTest() {
     
     // Setup snake in the middle with plenty of room to move
     testSnake.setCoordinates(new int[][]{{10, 10}, {9, 10}, {8, 10}});
-    testSnake.setDirection("RIGHT");
+    testSnake.setDirection(Direction.RIGHT);
     
     // Remove all other snakes to eliminate collisions
     List<Snake> snakes = new ArrayList<>();
@@ -274,13 +225,13 @@ public void updateBot_probabilityTest() {
     
     for (int i = 0; i < iterations; i++) {
         // Reset direction before each attempt
-        testSnake.setDirection("RIGHT");
+        testSnake.setDirection(Direction.RIGHT);
         
         // Run the bot logic
         botService.updateBot(testGame, testSnake);
         
         // Check if direction changed
-        if (!testSnake.getDirection().equals("RIGHT")) {
+        if (!testSnake.getDirection().equals(Direction.RIGHT)) {
             directionChanges++;
         }
     }
@@ -297,14 +248,14 @@ public void updateBot_probabilityTest() {
 @Test
 public void availablePowerUpOrCookieMoves_outOfBounds() {
     try {
-        Method method = BotService.class.getDeclaredMethod("availablePowerUpOrCookieMoves", Snake.class, Game.class, int[][].class, String.class);
+        Method method = BotService.class.getDeclaredMethod("availablePowerUpOrCookieMoves", Snake.class, Game.class, Direction.class);
         method.setAccessible(true);
         
         // Position snake near boundary
         testSnake.setCoordinates(new int[][]{{0, 10}, {1, 10}, {2, 10}});
         
         // Test move that would go out of bounds
-        boolean result = (boolean) method.invoke(botService, testSnake, testGame, testSnake.getCoordinates(), "LEFT");
+        boolean result = (boolean) method.invoke(botService, testSnake, testGame, Direction.LEFT);
         assertFalse(result, "Move should not be available when going out of bounds");
         
     } catch (Exception e) {
@@ -315,7 +266,7 @@ public void availablePowerUpOrCookieMoves_outOfBounds() {
 @Test
 public void availableMoves_collisionWithSnake() {
     try {
-        Method method = BotService.class.getDeclaredMethod("availableMoves", Snake.class, Game.class, int[][].class, String.class);
+        Method method = BotService.class.getDeclaredMethod("availableMoves", Snake.class, Game.class, Direction.class);
         method.setAccessible(true);
         
         // Create a second snake in the path
@@ -325,7 +276,7 @@ public void availableMoves_collisionWithSnake() {
         testGame.addSnake(otherSnake);
         
         // Test move that would collide with other snake
-        boolean result = (boolean) method.invoke(botService, testSnake, testGame, testSnake.getCoordinates(), "RIGHT");
+        boolean result = (boolean) method.invoke(botService, testSnake, testGame, Direction.RIGHT);
         assertFalse(result, "Move should not be available when would collide with another snake");
         
     } catch (Exception e) {
@@ -336,7 +287,7 @@ public void availableMoves_collisionWithSnake() {
 @Test
 public void isGoingToPickUpPowerDown_withDivider() {
     try {
-        Method method = BotService.class.getDeclaredMethod("isGoingToPickUpPowerDown", Game.class, int[][].class, String.class);
+        Method method = BotService.class.getDeclaredMethod("isGoingToPickUpPowerDown", Game.class, Snake.class, Direction.class);
         method.setAccessible(true);
         
         // Create a divider item in the path
@@ -345,7 +296,7 @@ public void isGoingToPickUpPowerDown_withDivider() {
         testGame.addItem(divider);
         
         // Test if moving right would pick up the power down
-        boolean result = (boolean) method.invoke(botService, testGame, testSnake.getCoordinates(), "RIGHT");
+        boolean result = (boolean) method.invoke(botService, testGame, testSnake, Direction.RIGHT);
         
         // Since we don't know what getFourPositions returns, we can't assert the exact result
         // Instead, let's just run the test to improve coverage
@@ -357,7 +308,7 @@ public void isGoingToPickUpPowerDown_withDivider() {
 @Test
 public void availablePowerUpOrCookieMoves_withDifferentItems() {
     try {
-        Method method = BotService.class.getDeclaredMethod("availablePowerUpOrCookieMoves", Snake.class, Game.class, int[][].class, String.class);
+        Method method = BotService.class.getDeclaredMethod("availablePowerUpOrCookieMoves", Snake.class, Game.class, Direction.class);
         method.setAccessible(true);
         
         // Add different types of items
@@ -375,15 +326,15 @@ public void availablePowerUpOrCookieMoves_withDifferentItems() {
         testGame.addItem(multiplier);
         
         // Test RIGHT move for cookie
-        boolean hasRight = (boolean) method.invoke(botService, testSnake, testGame, testSnake.getCoordinates(), "RIGHT");
+        boolean hasRight = (boolean) method.invoke(botService, testSnake, testGame, Direction.RIGHT);
         assertTrue(hasRight, "Should detect cookie to the right");
         
         // Test UP move for golden cookie
-        boolean hasUp = (boolean) method.invoke(botService, testSnake, testGame, testSnake.getCoordinates(), "UP");
+        boolean hasUp = (boolean) method.invoke(botService, testSnake, testGame, Direction.UP);
         assertTrue(hasUp, "Should detect golden cookie above");
         
         // Test random move with no item
-        boolean hasDown = (boolean) method.invoke(botService, testSnake, testGame, testSnake.getCoordinates(), "DOWN");
+        boolean hasDown = (boolean) method.invoke(botService, testSnake, testGame, Direction.DOWN);
         assertFalse(hasDown, "Should not detect any item below");
         
     } catch (Exception e) {
@@ -394,16 +345,16 @@ public void availablePowerUpOrCookieMoves_withDifferentItems() {
 @Test
 public void mapTwoDirectionsToCurve_edgeCases() {
     try {
-        Method method = BotService.class.getDeclaredMethod("mapTwoDirectionsToCurve", Snake.class, String.class, String.class);
+        Method method = BotService.class.getDeclaredMethod("mapTwoDirectionsToCurve", Snake.class, Direction.class, Direction.class);
         method.setAccessible(true);
         
         // Test with same directions (should return previous curve)
-        testSnake.setPreviousCurve("RIGHTCURVE");
-        String result = (String) method.invoke(botService, testSnake, "RIGHT", "RIGHT");
+        testSnake.setPreviousCurve(Curve.RIGHTCURVE);
+        Curve result = (Curve) method.invoke(botService, testSnake, Direction.RIGHT, Direction.RIGHT);
         assertEquals(testSnake.getPreviousCurve(), result, "Should return previous curve for same directions");
         
         // Test with non-adjacent directions
-        String result2 = (String) method.invoke(botService, testSnake, "UP", "DOWN");
+        Curve result2 = (Curve) method.invoke(botService, testSnake, Direction.UP, Direction.DOWN);
         assertEquals(testSnake.getPreviousCurve(), result2, "Should return previous curve for non-adjacent directions");
         
     } catch (Exception e) {
@@ -414,12 +365,12 @@ public void mapTwoDirectionsToCurve_edgeCases() {
 @Test
 public void mapCurveToDirection_nullCases() {
     try {
-        Method method = BotService.class.getDeclaredMethod("mapCurveToDirection", String.class, String.class);
+        Method method = BotService.class.getDeclaredMethod("mapCurveToDirection", Curve.class, Direction.class);
         method.setAccessible(true);
         
-        // Test with invalid curve
-        String result = (String) method.invoke(botService, "INVALID_CURVE", "UP");
-        assertNull(result, "Should return null for invalid curve");
+        // Test with missing curve
+        Direction result = (Direction) method.invoke(botService, null, Direction.UP);
+        assertNull(result, "Should return null for missing curve");
         
     } catch (Exception e) {
         fail("Test failed: " + e.getMessage());
@@ -442,26 +393,26 @@ public void updateBot_multiplePowerUps() {
     }
     
     // Just verify it completes without exception
-    assertTrue(Arrays.asList("UP", "DOWN", "LEFT", "RIGHT").contains(testSnake.getDirection()));
+    assertTrue(Arrays.asList(Direction.values()).contains(testSnake.getDirection()));
 }
 
 @Test
 public void mapCurveToDirection_allCombinations() {
     try {
-        Method method = BotService.class.getDeclaredMethod("mapCurveToDirection", String.class, String.class);
+        Method method = BotService.class.getDeclaredMethod("mapCurveToDirection", Curve.class, Direction.class);
         method.setAccessible(true);
         
         // Test LEFTCURVE with all directions
-        assertEquals("LEFT", method.invoke(botService, "LEFTCURVE", "UP"));
-        assertEquals("RIGHT", method.invoke(botService, "LEFTCURVE", "DOWN"));
-        assertEquals("DOWN", method.invoke(botService, "LEFTCURVE", "LEFT"));
-        assertEquals("UP", method.invoke(botService, "LEFTCURVE", "RIGHT"));
+        assertEquals(Direction.LEFT, method.invoke(botService, Curve.LEFTCURVE, Direction.UP));
+        assertEquals(Direction.RIGHT, method.invoke(botService, Curve.LEFTCURVE, Direction.DOWN));
+        assertEquals(Direction.DOWN, method.invoke(botService, Curve.LEFTCURVE, Direction.LEFT));
+        assertEquals(Direction.UP, method.invoke(botService, Curve.LEFTCURVE, Direction.RIGHT));
         
         // Test RIGHTCURVE with all directions
-        assertEquals("RIGHT", method.invoke(botService, "RIGHTCURVE", "UP"));
-        assertEquals("LEFT", method.invoke(botService, "RIGHTCURVE", "DOWN"));
-        assertEquals("UP", method.invoke(botService, "RIGHTCURVE", "LEFT"));
-        assertEquals("DOWN", method.invoke(botService, "RIGHTCURVE", "RIGHT"));
+        assertEquals(Direction.RIGHT, method.invoke(botService, Curve.RIGHTCURVE, Direction.UP));
+        assertEquals(Direction.LEFT, method.invoke(botService, Curve.RIGHTCURVE, Direction.DOWN));
+        assertEquals(Direction.UP, method.invoke(botService, Curve.RIGHTCURVE, Direction.LEFT));
+        assertEquals(Direction.DOWN, method.invoke(botService, Curve.RIGHTCURVE, Direction.RIGHT));
         
     } catch (Exception e) {
         fail("Test failed: " + e.getMessage());
@@ -471,16 +422,16 @@ public void mapCurveToDirection_allCombinations() {
 @Test
 public void mapTwoDirectionsToCurve_allCombinations() {
     try {
-        Method method = BotService.class.getDeclaredMethod("mapTwoDirectionsToCurve", Snake.class, String.class, String.class);
+        Method method = BotService.class.getDeclaredMethod("mapTwoDirectionsToCurve", Snake.class, Direction.class, Direction.class);
         method.setAccessible(true);
         
         // Test all valid combinations for LEFT -> directions
-        assertEquals("RIGHTCURVE", method.invoke(botService, testSnake, "LEFT", "UP"));
-        assertEquals("LEFTCURVE", method.invoke(botService, testSnake, "LEFT", "DOWN"));
+        assertEquals(Curve.RIGHTCURVE, method.invoke(botService, testSnake, Direction.LEFT, Direction.UP));
+        assertEquals(Curve.LEFTCURVE, method.invoke(botService, testSnake, Direction.LEFT, Direction.DOWN));
         
         // Test all valid combinations for RIGHT -> directions
-        assertEquals("LEFTCURVE", method.invoke(botService, testSnake, "RIGHT", "UP"));
-        assertEquals("RIGHTCURVE", method.invoke(botService, testSnake, "RIGHT", "DOWN"));
+        assertEquals(Curve.LEFTCURVE, method.invoke(botService, testSnake, Direction.RIGHT, Direction.UP));
+        assertEquals(Curve.RIGHTCURVE, method.invoke(botService, testSnake, Direction.RIGHT, Direction.DOWN));
         
     } catch (Exception e) {
         fail("Test failed: " + e.getMessage());
@@ -502,7 +453,7 @@ public void updateBot_emptyCookieList() {
 @Test
 public void availableMoves_emptyCoordinates() {
     try {
-        Method method = BotService.class.getDeclaredMethod("availableMoves", Snake.class, Game.class, int[][].class, String.class);
+        Method method = BotService.class.getDeclaredMethod("availableMoves", Snake.class, Game.class, Direction.class);
         method.setAccessible(true);
         
         // Create a snake with empty coordinates
@@ -512,7 +463,7 @@ public void availableMoves_emptyCoordinates() {
         testGame.addSnake(emptySnake);
         
         // Test move with a snake that has empty coordinates in the game
-        boolean result = (boolean) method.invoke(botService, testSnake, testGame, testSnake.getCoordinates(), "RIGHT");
+        boolean result = (boolean) method.invoke(botService, testSnake, testGame, Direction.RIGHT);
         
         // Just verify the method completes - we can't make assertions about the result
         // as it depends on many factors
@@ -0,0 +1,79 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.entity.Game;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameLoopSchedulerTest {
+
+    private GameLoopScheduler scheduler;
+
+    @BeforeEach
+    public void setup() {
+        scheduler = new GameLoopScheduler(2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void schedule_runsTickRepeatedly() throws InterruptedException {
+        Game game = new Game();
+        CountDownLatch ticks = new CountDownLatch(2);
+
+        scheduler.schedule(game, ticks::countDown);
+
+        assertTrue(ticks.await(2, TimeUnit.SECONDS));
+        scheduler.cancel(game);
+    }
+
+    @Test
+    public void schedule_spreadsGamesOverWorkers() {
+        Game game1 = new Game();
+        Game game2 = new Game();
+        Game game3 = new Game();
+
+        scheduler.schedule(game1, () -> {});
+        scheduler.schedule(game2, () -> {});
+        scheduler.schedule(game3, () -> {});
+
+        assertEquals(2, scheduler.getWorkerCount());
+        assertArrayEquals(new int[]{2, 1}, scheduler.getGamesPerWorker());
+    }
+
+    @Test
+    public void cancel_releasesWorkerSlot() {
+        Game game1 = new Game();
+        Game game2 = new Game();
+        scheduler.schedule(game1, () -> {});
+        scheduler.schedule(game2, () -> {});
+
+        scheduler.cancel(game1);
+        scheduler.cancel(game1); // second cancel is a no-op
+
+        assertArrayEquals(new int[]{0, 1}, scheduler.getGamesPerWorker());
+    }
+
+    @Test
+    public void schedule_recordsTickLateness() throws InterruptedException {
+        Game game = new Game();
+        CountDownLatch ticks = new CountDownLatch(3);
+
+        scheduler.schedule(game, ticks::countDown);
+        assertTrue(ticks.await(2, TimeUnit.SECONDS));
+        scheduler.cancel(game);
+
+        double[] lateness = scheduler.getMaxTickLatenessMillis();
+        assertEquals(2, lateness.length);
+        assertTrue(lateness[0] >= 0);
+        assertEquals(0, scheduler.getLateTicks()[1]);
+    }
+}
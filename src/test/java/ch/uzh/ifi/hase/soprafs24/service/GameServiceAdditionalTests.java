@@ -1,5 +1,6 @@
 package ch.uzh.ifi.hase.soprafs24.service;
 
+import ch.uzh.ifi.hase.soprafs24.constant.Direction;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -8,7 +9,9 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,6 +19,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.context.ApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import ch.uzh.ifi.hase.soprafs24.entity.*;
 import ch.uzh.ifi.hase.soprafs24.entity.Powerdowns.Divider;
@@ -50,6 +54,12 @@ public class GameServiceAdditionalTests {
     @Mock
     private WebSocketHandler webSocketHandler;
 
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private LeaderboardIndex leaderboardIndex;
+
     @InjectMocks
     private GameService gameService;
 
@@ -100,6 +110,7 @@ public class GameServiceAdditionalTests {
         when(userRepository.findByUsername("testUser2")).thenReturn(testUser2);
         when(userRepository.findById(1L)).thenReturn(Optional.of(testUser1));
         when(userRepository.findById(2L)).thenReturn(Optional.of(testUser2));
+        when(userRepository.findAllById(any())).thenReturn(new ArrayList<>(List.of(testUser1, testUser2)));
     }
 
     @Test
@@ -161,12 +172,12 @@ public class GameServiceAdditionalTests {
         // Setup
         Snake testSnake = new Snake();
         testSnake.setUserId(1L);
-        testSnake.setDirection("RIGHT");
+        testSnake.setDirection(Direction.RIGHT);
         testSnake.setCoordinates(new int[][]{{4, 4}, {3, 4}, {2, 4}});
         testGame.addSnake(testSnake);
         
         // Try to move LEFT which is opposite to current direction RIGHT
-        gameService.respondToKeyInputs(testGame, testUser1, "LEFT");
+        gameService.respondToKeyInputs(testGame, testUser1.getId(), Direction.LEFT);
         
         // Queue should remain empty
         assertTrue(testSnake.getDirectionQueue().isEmpty());
@@ -177,12 +188,12 @@ public class GameServiceAdditionalTests {
         // Setup
         Snake testSnake = new Snake();
         testSnake.setUserId(1L);
-        testSnake.setDirection("RIGHT");
+        testSnake.setDirection(Direction.RIGHT);
         testSnake.setCoordinates(new int[][]{{4, 4}, {3, 4}, {2, 4}});
         testGame.addSnake(testSnake);
         
         // Try to move in the same direction
-        gameService.respondToKeyInputs(testGame, testUser1, "RIGHT");
+        gameService.respondToKeyInputs(testGame, testUser1.getId(), Direction.RIGHT);
         
         // Queue should remain empty
         assertTrue(testSnake.getDirectionQueue().isEmpty());
@@ -193,7 +204,7 @@ public class GameServiceAdditionalTests {
         // Setup
         Snake testSnake = new Snake();
         testSnake.setUserId(1L);
-        testSnake.setDirection("RIGHT");
+        testSnake.setDirection(Direction.RIGHT);
         testSnake.setCoordinates(new int[][]{{4, 4}, {3, 4}, {2, 4}});
         testGame.addSnake(testSnake);
         
@@ -202,7 +213,7 @@ public class GameServiceAdditionalTests {
         differentUser.setId(3L);
         
         // Try to control the snake with a different user
-        gameService.respondToKeyInputs(testGame, differentUser, "UP");
+        gameService.respondToKeyInputs(testGame, differentUser.getId(), Direction.UP);
         
         // Snake should be unaffected
         assertTrue(testSnake.getDirectionQueue().isEmpty());
@@ -216,20 +227,18 @@ public class GameServiceAdditionalTests {
         
         // Snake 1 with length 3
         Snake snake1 = new Snake();
+        snake1.setUserId(1L);
         snake1.setUsername("testUser1");
         snake1.setCoordinates(new int[][]{{1, 1}, {1, 2}, {1, 3}});
         game.addSnake(snake1);
         
         // Snake 2 with length 5
         Snake snake2 = new Snake();
+        snake2.setUserId(2L);
         snake2.setUsername("testUser2");
         snake2.setCoordinates(new int[][]{{2, 1}, {2, 2}, {2, 3}, {2, 4}, {2, 5}});
         game.addSnake(snake2);
         
-        // Add user lookups
-        when(userRepository.findByUsername("testUser1")).thenReturn(testUser1);
-        when(userRepository.findByUsername("testUser2")).thenReturn(testUser2);
-        
         // Rank the players
         gameService.rankRemainingPlayers(game);
         
@@ -238,6 +247,7 @@ public class GameServiceAdditionalTests {
         assertEquals(2, leaderboard.size());
         assertEquals("testUser2", leaderboard.get(0)); // Snake2 has length 5
         assertEquals("testUser1", leaderboard.get(1)); // Snake1 has length 3
+        assertEquals(2L, game.getWinnerId());
         
         // Verify that all snakes were marked as dead (empty coordinates)
         assertEquals(0, snake1.getCoordinates().length);
@@ -256,16 +266,93 @@ public class GameServiceAdditionalTests {
         
         // Create a snake with length greater than the PR
         Snake snake = new Snake();
+        snake.setUserId(1L);
         snake.setUsername("testUser1");
         snake.setCoordinates(new int[][]{{1, 1}, {1, 2}, {1, 3}, {1, 4}, {1, 5}}); // Length 5
         game.addSnake(snake);
         
         // When
-        gameService.rankRemainingPlayers(game);
+        Map<Long, Integer> finalLengths = gameService.rankRemainingPlayers(game);
         
+        // Then: the PR is only applied with the game result
+        assertEquals(5, finalLengths.get(1L));
+        verifyNoInteractions(userRepository);
+        assertEquals(3, testUser1.getLengthPR());
+    }
+
+    @Test
+    public void endGame_multiplayerGame_appliesLengthPRInBulk() throws IOException {
+        // Setup
+        testLobby.setSolo(false);
+        testUser1.setLengthPR(3);
+        testUser2.setLengthPR(10);
+        Snake snake1 = new Snake();
+        snake1.setUserId(1L);
+        snake1.setUsername("testUser1");
+        snake1.setCoordinates(new int[][]{{1, 1}, {1, 2}, {1, 3}, {1, 4}, {1, 5}});
+        Snake snake2 = new Snake();
+        snake2.setUserId(2L);
+        snake2.setUsername("testUser2");
+        snake2.setCoordinates(new int[][]{{5, 5}, {5, 6}, {5, 7}, {5, 8}});
+        testGame.addSnake(snake1);
+        testGame.addSnake(snake2);
+
+        // When
+        gameService.endGame(testGame);
+
         // Then
-        verify(userRepository, times(1)).save(testUser1);
         assertEquals(5, testUser1.getLengthPR());
+        assertEquals(10, testUser2.getLengthPR());
+        verify(userRepository, times(1)).findAllById(Set.of(1L, 2L));
+        verify(userRepository, times(1)).saveAll(List.of(testUser1, testUser2));
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    public void endGame_winnerAlreadyLeft_onlyWinIsCounted() throws IOException {
+        // Setup: testUser2 won but has left the lobby, the winner is known by the userId of the snake
+        testLobby.setSolo(false);
+        testLobby.setParticipantIds(Arrays.asList(1L));
+        rank(testGame, testUser2, testUser1);
+        // the result does not depend on the username
+        testUser2.setUsername("renamed");
+        testUser2.setPlayedGames(1);
+
+        // When
+        gameService.endGame(testGame);
+
+        // Then
+        verify(userRepository, times(1)).findAllById(Set.of(1L, 2L));
+        verify(userRepository, never()).findByUsername(anyString());
+        assertEquals(1, testUser2.getWins());
+        assertEquals(1, testUser2.getPlayedGames());
+        assertEquals(0, testUser1.getWins());
+        assertEquals(1, testUser1.getPlayedGames());
+    }
+
+    @Test
+    public void commitLeaverResult_countsPlayedGameWithoutWin() {
+        // Setup
+        testUser1.setWins(1);
+        testUser1.setPlayedGames(1);
+        testUser1.setLengthPR(2);
+        Snake snake = new Snake();
+        snake.setUserId(1L);
+        snake.setCoordinates(new int[][]{{1, 1}, {1, 2}, {1, 3}, {1, 4}});
+        testGame.addSnake(snake);
+
+        // When
+        gameService.commitLeaverResult(testGame, 1L);
+
+        // Then
+        assertEquals(1, testUser1.getWins());
+        assertEquals(2, testUser1.getPlayedGames());
+        assertEquals(0.5, testUser1.getWinRate(), 0.01);
+        assertEquals(4, testUser1.getLengthPR());
+        verify(snakeService).flushStats();
+        verify(userRepository).save(testUser1);
+        verify(transactionManager, times(1)).commit(any());
+        verify(leaderboardIndex).update(testUser1);
     }
     
     @Test
@@ -297,7 +384,7 @@ public class GameServiceAdditionalTests {
         // Setup
         testLobby.setSolo(true);
         testGame.setLobby(testLobby);
-        testGame.setLeaderboard(Arrays.asList(testUser1.getUsername()));
+        rank(testGame, testUser1);
         
         // Initial wins
         int initialWins = testUser1.getWins();
@@ -325,7 +412,7 @@ public class GameServiceAdditionalTests {
         testUser2.setWinRate(0.0);
         
         // User1 wins this game
-        testGame.setLeaderboard(Arrays.asList(testUser1.getUsername(), testUser2.getUsername()));
+        rank(testGame, testUser1, testUser2);
         
         // When
         gameService.endGame(testGame);
@@ -354,7 +441,7 @@ public class GameServiceAdditionalTests {
         testUser1.setPlayedGames(10);
         
         // Add user to leaderboard
-        testGame.setLeaderboard(Arrays.asList(testUser1.getUsername()));
+        rank(testGame, testUser1);
         
         // When
         gameService.endGame(testGame);
@@ -425,4 +512,14 @@ public class GameServiceAdditionalTests {
             fail("Test failed due to reflection error: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    // traegt die Spieler ein wie das Spiel: der zuletzt eingetragene steht zuoberst
+    private static void rank(Game game, User... ranking) {
+        for (int i = ranking.length - 1; i >= 0; i--) {
+            Snake snake = new Snake();
+            snake.setUserId(ranking[i].getId());
+            snake.setUsername(ranking[i].getUsername());
+            game.addLeaderboardEntry(snake);
+        }
+    }
+}
@@ -1,20 +1,27 @@
 package ch.uzh.ifi.hase.soprafs24.service;
 
+import ch.uzh.ifi.hase.soprafs24.constant.Direction;
 import ch.uzh.ifi.hase.soprafs24.entity.*;
+import ch.uzh.ifi.hase.soprafs24.entity.Powerdowns.Divider;
 import ch.uzh.ifi.hase.soprafs24.entity.Powerups.Cookie;
+import ch.uzh.ifi.hase.soprafs24.entity.Powerups.GoldenCookie;
 import ch.uzh.ifi.hase.soprafs24.handler.WebSocketHandler;
 import ch.uzh.ifi.hase.soprafs24.repository.LobbyRepository;
 import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.stubbing.Answer;
 import org.springframework.context.ApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
@@ -23,6 +30,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -49,6 +57,15 @@ public class GameServiceTest {
     @Mock
     private WebSocketHandler webSocketHandler;
 
+    @Mock
+    private GameLoopScheduler gameLoopScheduler;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private LeaderboardIndex leaderboardIndex;
+
     @InjectMocks
     private GameService gameService;
 
@@ -99,6 +116,7 @@ public class GameServiceTest {
         when(userRepository.findByUsername("testUser2")).thenReturn(testUser2);
         when(userRepository.findById(1L)).thenReturn(Optional.of(testUser1));
         when(userRepository.findById(2L)).thenReturn(Optional.of(testUser2));
+        when(userRepository.findAllById(any())).thenReturn(new ArrayList<>(List.of(testUser1, testUser2)));
     }
 
 //    @Test
@@ -127,16 +145,16 @@ public class GameServiceTest {
         // Setup
         Snake testSnake = new Snake();
         testSnake.setUserId(1L);
-        testSnake.setDirection("RIGHT");
+        testSnake.setDirection(Direction.RIGHT);
         testSnake.setCoordinates(new int[][]{{4, 4}, {3, 4}, {2, 4}});
         testGame.addSnake(testSnake);
 
         // when
-        gameService.respondToKeyInputs(testGame, testUser1, "UP");
+        gameService.respondToKeyInputs(testGame, testUser1.getId(), Direction.UP);
 
         // then
         assertEquals(1, testSnake.getDirectionQueue().size());
-        assertEquals("UP", testSnake.getDirectionQueue().get(0));
+        assertEquals(Direction.UP, testSnake.getDirectionQueue().get(0));
     }
 
     @Test
@@ -144,16 +162,16 @@ public class GameServiceTest {
         // Setup
         Snake testSnake = new Snake();
         testSnake.setUserId(1L);
-        testSnake.setDirection("RIGHT");
+        testSnake.setDirection(Direction.RIGHT);
         testSnake.setCoordinates(new int[][]{{4, 4}, {3, 4}, {2, 4}});
-        testSnake.addDirectionQueue("UP");
+        testSnake.addDirectionQueue(Direction.UP);
         testGame.addSnake(testSnake);
 
         // when
         gameService.updateSnakeDirection(testSnake);
 
         // then
-        assertEquals("UP", testSnake.getDirection());
+        assertEquals(Direction.UP, testSnake.getDirection());
         assertTrue(testSnake.getDirectionQueue().isEmpty());
     }
 
@@ -162,35 +180,40 @@ public class GameServiceTest {
         // Setup
         Snake testSnake = new Snake();
         testSnake.setUserId(1L);
-        testSnake.setDirection("RIGHT");
+        testSnake.setDirection(Direction.RIGHT);
         testSnake.setCoordinates(new int[][]{{4, 4}, {3, 4}, {2, 4}});
-        testSnake.addDirectionQueue("LEFT"); // Invalid because it's opposite of current direction
+        testSnake.addDirectionQueue(Direction.LEFT); // Invalid because it's opposite of current direction
         testGame.addSnake(testSnake);
 
         // when
         gameService.updateSnakeDirection(testSnake);
 
         // then
-        assertEquals("RIGHT", testSnake.getDirection()); // Direction remains unchanged
+        assertEquals(Direction.RIGHT, testSnake.getDirection()); // Direction remains unchanged
         assertTrue(testSnake.getDirectionQueue().isEmpty());
     }
 
     @Test
     public void endGame_winnerExists_updatesStats() throws IOException {
         // Setup
-        testGame.setLeaderboard(Arrays.asList(testUser1.getUsername()));
+        rank(testGame, testUser1);
         
         // when
         gameService.endGame(testGame);
 
         // then
-        verify(userRepository, times(1)).findByUsername("testUser1");
-        verify(userRepository, atLeast(testLobby.getParticipantIds().size())).save(any(User.class));
+        // one query and one batched write for all participants
+        verify(userRepository, times(1)).findAllById(Set.copyOf(testLobby.getParticipantIds()));
+        verify(userRepository, times(1)).saveAll(List.of(testUser1, testUser2));
+        verify(userRepository, never()).save(any(User.class));
+        verify(transactionManager, times(1)).commit(any());
+        verify(leaderboardIndex, times(1)).updateAll(List.of(testUser1, testUser2));
         
         assertEquals(1, testUser1.getWins());
         
         // Verify that the broadcast was called
         verify(webSocketHandler, times(1)).broadcastToLobby(eq(testLobby.getId()), any(ObjectNode.class));
+        verify(webSocketHandler, times(1)).unbindPlayers(testGame);
     }
     
     @Test
@@ -204,12 +227,8 @@ public class GameServiceTest {
         // when
         gameService.start(testGame);
         
-        // Give the thread some time to execute
-        Thread.sleep(100);
-        
-        // This is a limited test since the method spawns a new thread
-        // We mainly verify that the method does not throw exceptions
-        assertDoesNotThrow(() -> {});
+        // The loop is no longer a thread of its own but a tick on the shared scheduler
+        verify(gameLoopScheduler, times(1)).schedule(eq(testGame), any(Runnable.class));
     }
     
     @Test
@@ -219,8 +238,8 @@ public class GameServiceTest {
         
         // Setup with 4 players in the lobby
         testLobby.setParticipantIds(Arrays.asList(1L, 2L, 3L, 4L));
-        when(userService.getUserById(3L)).thenReturn(createTestUser(3L, "testUser3"));
-        when(userService.getUserById(4L)).thenReturn(createTestUser(4L, "testUser4"));
+        when(userRepository.findAllById(testLobby.getParticipantIds())).thenReturn(List.of(
+                testUser1, testUser2, createTestUser(3L, "testUser3"), createTestUser(4L, "testUser4")));
         
         // when
         Game game = gameService.createGame(testLobby, "Medium", false);
@@ -229,16 +248,43 @@ public class GameServiceTest {
         assertEquals(4, game.getSnakes().size());
         
         // Verify each snake has different starting positions
-        List<String> directions = new ArrayList<>();
+        List<Direction> directions = new ArrayList<>();
         for (Snake snake : game.getSnakes()) {
             directions.add(snake.getDirection());
         }
         
         // Verify we have all four directions
-        assertTrue(directions.contains("RIGHT"));
-        assertTrue(directions.contains("LEFT"));
-        assertTrue(directions.contains("UP"));
-        assertTrue(directions.contains("DOWN"));
+        assertTrue(directions.contains(Direction.RIGHT));
+        assertTrue(directions.contains(Direction.LEFT));
+        assertTrue(directions.contains(Direction.UP));
+        assertTrue(directions.contains(Direction.DOWN));
+    }
+
+    @Test
+    public void createGame_loadsPlayerProfilesOnce() {
+        // the repository does not keep the lobby order
+        testUser2.setIsBot(true);
+        testUser2.setWins(3);
+        when(userRepository.findAllById(testLobby.getParticipantIds())).thenReturn(List.of(testUser2, testUser1));
+
+        // when
+        Game game = gameService.createGame(testLobby, "Medium", false);
+
+        // then
+        verify(userRepository, times(1)).findAllById(testLobby.getParticipantIds());
+        verifyNoInteractions(userService);
+        assertEquals(2, game.getPlayers().size());
+        assertEquals("testUser1", game.getPlayer(0).getUsername());
+        PlayerProfile second = game.getPlayer(1);
+        assertEquals(2L, second.getUserId());
+        assertTrue(second.getIsBot());
+        assertEquals(3, second.getWins());
+        for (Snake snake : game.getSnakes()) {
+            PlayerProfile player = game.getPlayer(snake.getPlayerIndex());
+            assertEquals(player.getUserId(), snake.getUserId());
+            assertEquals(player.getUsername(), snake.getUsername());
+            assertEquals(player.getIsBot(), snake.getIsBot());
+        }
     }
     
     // Helper method to create test users
@@ -279,13 +325,89 @@ public class GameServiceTest {
         }
     }
     
+    @Test
+    public void spawnItem_onlyOneFreeCell_spawnsCookieThere() throws Exception {
+        Game game = new Game();
+        game.setItems(new ArrayList<>());
+        // alle Zellen ausser (29, 24) mit einer langen Schlange belegen
+        int[][] body = new int[Board.CELLS - 1][];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = new int[]{Board.cellX(i), Board.cellY(i)};
+        }
+        Snake snake = new Snake();
+        snake.setCoordinates(body);
+        game.addSnake(snake);
+        assertEquals(1, game.getBoard().freeCellCount());
+
+        java.lang.reflect.Method method = GameService.class.getDeclaredMethod("spawnItem", Game.class);
+        method.setAccessible(true);
+        method.invoke(gameService, game);
+        method.invoke(gameService, game);
+
+        // first spawn takes the last free cell, the second one finds the board full
+        assertEquals(1, game.getItems().size());
+        assertArrayEquals(new int[]{29, 24}, game.getItems().get(0).getPosition());
+        assertEquals(0, game.getBoard().freeCellCount());
+    }
+
+    @Test
+    public void freeCellPool_followsSnakesAndItems() {
+        Game game = new Game();
+        Board board = game.getBoard();
+        Snake snake = new Snake();
+        snake.setCoordinates(new int[][]{{5, 5}, {5, 6}});
+        game.addSnake(snake);
+        Item cookie = new Cookie(new int[]{5, 5}, "cookie"); // liegt auf der Schlange
+        game.addItem(cookie);
+        assertEquals(Board.CELLS - 2, board.freeCellCount());
+
+        snake.setCoordinates(new int[0][0]);
+        assertEquals(Board.CELLS - 1, board.freeCellCount());
+
+        game.removeItem(cookie);
+        assertEquals(Board.CELLS, board.freeCellCount());
+        int cell = board.randomFreeCell(new java.util.Random());
+        assertTrue(board.isFree(cell));
+    }
+
+    @Test
+    public void freeBlockPool_findsLastFreeBlock() throws Exception {
+        Game game = new Game();
+        Board board = game.getBoard();
+        assertEquals((Board.WIDTH - 1) * (Board.HEIGHT - 1), board.freeBlockCount());
+
+        // alles belegen ausser dem Block mit der Ecke (10, 10)
+        List<int[]> body = new ArrayList<>();
+        for (int i = 0; i < Board.CELLS; i++) {
+            int x = Board.cellX(i);
+            int y = Board.cellY(i);
+            if ((x == 10 || x == 11) && (y == 10 || y == 11)) {
+                continue;
+            }
+            body.add(new int[]{x, y});
+        }
+        Snake snake = new Snake();
+        snake.setCoordinates(body.toArray(new int[0][]));
+        game.addSnake(snake);
+        assertEquals(1, board.freeBlockCount());
+
+        java.lang.reflect.Method method = GameService.class.getDeclaredMethod("findFourAdjacentCoordinates", Game.class);
+        method.setAccessible(true);
+        assertArrayEquals(new int[]{10, 10}, (int[]) method.invoke(gameService, game));
+
+        // ein Cookie in der Luecke -> kein Block mehr frei
+        game.addItem(new Cookie(new int[]{11, 11}, "cookie"));
+        assertEquals(0, board.freeBlockCount());
+        assertNull(method.invoke(gameService, game));
+    }
+
     @Test
     public void updateGameState_snakeCollision_marksSnakeAsDead() {
         // Setup
         Game game = new Game();
         Snake snake = new Snake();
         snake.setCoordinates(new int[][]{{5, 5}, {5, 6}});
-        snake.setDirection("RIGHT");
+        snake.setDirection(Direction.RIGHT);
         snake.setUserId(1L);
         snake.setUsername("testUser1");
         game.addSnake(snake);
@@ -317,14 +439,14 @@ public class GameServiceTest {
 //        // First snake (survivor)
 //        Snake snake1 = new Snake();
 //        snake1.setCoordinates(new int[][]{{5, 5}, {5, 6}});
-//        snake1.setDirection("RIGHT");
+//        snake1.setDirection(Direction.RIGHT);
 //        snake1.setUserId(1L);
 //        snake1.setUsername("testUser1");
 //
 //        // Second snake (dead - empty coordinates)
 //        Snake snake2 = new Snake();
 //        snake2.setCoordinates(new int[0][0]);
-//        snake2.setDirection("LEFT");
+//        snake2.setDirection(Direction.LEFT);
 //        snake2.setUserId(2L);
 //        snake2.setUsername("testUser2");
 //
@@ -368,29 +490,157 @@ public class GameServiceTest {
             method.invoke(gameService, testGame);
             
             // then
-            verify(webSocketHandler, times(1)).broadcastToLobby(eq(testLobby.getId()), any(ObjectNode.class));
+            verify(webSocketHandler, times(1)).broadcastToLobby(eq(testLobby.getId()), any(WebSocketHandler.FrameEncoder.class), any(),
+                    any(WebSocketHandler.FrameEncoder.class), any());
             
         } catch (Exception e) {
             fail("Test failed due to reflection error: " + e.getMessage());
         }
     }
     
+    // kodiert jeden Broadcast sofort, der Frame-Inhalt wird beim naechsten Tick wiederverwendet
+    private List<JsonNode> captureEncodedFrames() throws IOException {
+        List<JsonNode> frames = new ArrayList<>();
+        Answer<Void> capture = invocation -> {
+            WebSocketHandler.FrameEncoder encoder = invocation.getArgument(1);
+            frames.add(new ObjectMapper().readTree(encoder.encode()));
+            return null;
+        };
+        doAnswer(capture).when(webSocketHandler).broadcastToLobby(anyLong(), any(WebSocketHandler.FrameEncoder.class), any());
+        doAnswer(capture).when(webSocketHandler).broadcastToLobby(anyLong(), any(WebSocketHandler.FrameEncoder.class), any(),
+                any(WebSocketHandler.FrameEncoder.class), any());
+        return frames;
+    }
+
+    @Test
+    public void broadcastGameState_groupsItemsByKind() throws Exception {
+        List<JsonNode> frames = captureEncodedFrames();
+        testGame.addItem(new Cookie(new int[]{1, 1}, "cookie"));
+        testGame.addItem(new Cookie(new int[]{2, 1}, "cookie"));
+        testGame.addItem(new GoldenCookie(new int[]{3, 1}, "powerup"));
+        testGame.addItem(new Divider(new int[]{10, 10}, "powerup"));
+
+        java.lang.reflect.Method method = GameService.class.getDeclaredMethod("broadcastGameState", Game.class);
+        method.setAccessible(true);
+        method.invoke(gameService, testGame);
+
+        JsonNode message = frames.get(0);
+        assertEquals(2, message.get("cookies").size());
+        assertEquals(3, message.get("goldenCookies").get(0).get(0).asInt());
+        assertEquals(1, message.get("dividers").size());
+        assertEquals(0, message.get("reverseControls").size());
+        assertEquals(0, message.get("multipliers").size());
+    }
+
     @Test
-    public void startCountdown_validGame_callsWebSocketHandler() throws IOException {
+    public void broadcastGameState_sendsDeltaAfterKeyframe() throws Exception {
+        List<JsonNode> frames = captureEncodedFrames();
+        testGame.addItem(new Cookie(new int[]{1, 1}, "cookie"));
+        java.lang.reflect.Method method = GameService.class.getDeclaredMethod("broadcastGameState", Game.class);
+        method.setAccessible(true);
+
+        method.invoke(gameService, testGame);
+        testGame.addItem(new Cookie(new int[]{2, 2}, "cookie"));
+        method.invoke(gameService, testGame);
+        gameService.requestKeyframe(testGame);
+        method.invoke(gameService, testGame);
+
+        assertEquals(3, frames.size());
+        JsonNode keyframe = frames.get(0);
+        JsonNode delta = frames.get(1);
+        assertEquals("gameState", keyframe.get("type").asText());
+        assertEquals("gameStateDelta", delta.get("type").asText());
+        assertEquals(1, delta.get("frame").asLong());
+        assertEquals(0, delta.get("keyframe").asLong());
+        assertEquals("[[2,2]]", delta.get("added").get("cookies").toString());
+        assertNull(delta.get("cookies"));
+        assertEquals("gameState", frames.get(2).get("type").asText());
+        assertEquals(2, frames.get(2).get("cookies").size());
+    }
+
+    @Test
+    public void broadcastGameState_keyframeForLaggingSessionKeepsDeltaChain() throws Exception {
+        List<JsonNode> frames = new ArrayList<>();
+        List<JsonNode> keyframes = new ArrayList<>();
+        doAnswer(invocation -> {
+            WebSocketHandler.FrameEncoder delta = invocation.getArgument(1);
+            WebSocketHandler.FrameEncoder keyframe = invocation.getArgument(3);
+            frames.add(new ObjectMapper().readTree(delta.encode()));
+            // beim zweiten Frame braucht eine Session den ganzen Zustand
+            if (frames.size() == 2) {
+                keyframes.add(new ObjectMapper().readTree(keyframe.encode()));
+            }
+            return null;
+        }).when(webSocketHandler).broadcastToLobby(anyLong(), any(WebSocketHandler.FrameEncoder.class), any(),
+                any(WebSocketHandler.FrameEncoder.class), any());
+        testGame.addItem(new Cookie(new int[]{1, 1}, "cookie"));
+        java.lang.reflect.Method method = GameService.class.getDeclaredMethod("broadcastGameState", Game.class);
+        method.setAccessible(true);
+
+        method.invoke(gameService, testGame);
+        testGame.addItem(new Cookie(new int[]{2, 2}, "cookie"));
+        method.invoke(gameService, testGame);
+        method.invoke(gameService, testGame);
+
+        assertEquals("gameStateDelta", frames.get(1).get("type").asText());
+        assertEquals("gameStateDelta", frames.get(2).get("type").asText());
+        JsonNode keyframe = keyframes.get(0);
+        assertEquals("gameState", keyframe.get("type").asText());
+        assertEquals(1, keyframe.get("frame").asLong());
+        assertEquals(0, keyframe.get("keyframe").asLong());
+        assertEquals(2, keyframe.get("cookies").size());
+        assertEquals(0, frames.get(2).get("keyframe").asLong());
+    }
+
+    @Test
+    public void broadcastCountdown_validGame_callsWebSocketHandler() throws IOException {
         // Use reflection to access private method
         java.lang.reflect.Method method;
         try {
-            method = GameService.class.getDeclaredMethod("startCountdown", Game.class, int.class);
+            method = GameService.class.getDeclaredMethod("broadcastCountdown", Game.class, int.class);
             method.setAccessible(true);
             
-            // Call with a short countdown to avoid long test duration
+            // One countdown frame per call, the loop takes care of the pacing
             method.invoke(gameService, testGame, 1);
             
             // then
-            verify(webSocketHandler, times(1)).broadcastToLobby(eq(testLobby.getId()), any(ObjectNode.class));
+            verify(webSocketHandler, times(1)).broadcastToLobby(eq(testLobby.getId()), any(WebSocketHandler.FrameEncoder.class), isNull());
             
         } catch (Exception e) {
             fail("Test failed due to reflection error: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void broadcastCountdown_streamsSnakesAndItems() throws Exception {
+        List<JsonNode> frames = captureEncodedFrames();
+        Snake snake = new Snake();
+        snake.setCoordinates(new int[][]{{5, 5}, {5, 6}});
+        snake.setUsername("testUser1");
+        testGame.addSnake(snake);
+        testGame.addItem(new Cookie(new int[]{1, 1}, "cookie"));
+        testGame.addItem(new Divider(new int[]{10, 10}, "powerup"));
+
+        java.lang.reflect.Method method = GameService.class.getDeclaredMethod("broadcastCountdown", Game.class, int.class);
+        method.setAccessible(true);
+        method.invoke(gameService, testGame, 3);
+
+        JsonNode message = frames.get(0);
+        assertEquals("preGame", message.get("type").asText());
+        assertEquals(3, message.get("countdown").asInt());
+        assertEquals("[[5,5],[5,6]]", message.get("snakes").get("testUser1").toString());
+        assertEquals("[[1,1]]", message.get("cookies").toString());
+        assertEquals("[[10,10]]", message.get("dividers").toString());
+        assertEquals(0, message.get("multipliers").size());
+    }
+
+    // traegt die Spieler ein wie das Spiel: der zuletzt eingetragene steht zuoberst
+    private static void rank(Game game, User... ranking) {
+        for (int i = ranking.length - 1; i >= 0; i--) {
+            Snake snake = new Snake();
+            snake.setUserId(ranking[i].getId());
+            snake.setUsername(ranking[i].getUsername());
+            game.addLeaderboardEntry(snake);
+        }
+    }
+}
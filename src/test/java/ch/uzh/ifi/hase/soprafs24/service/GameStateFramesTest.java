@@ -0,0 +1,138 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.ItemKind;
+import ch.uzh.ifi.hase.soprafs24.entity.Game;
+import ch.uzh.ifi.hase.soprafs24.entity.Powerups.Cookie;
+import ch.uzh.ifi.hase.soprafs24.entity.Powerups.GoldenCookie;
+import ch.uzh.ifi.hase.soprafs24.entity.Snake;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameStateFramesTest {
+
+    private GameStateFrames frames;
+    private Game game;
+    private Snake snake;
+    private List<String> effects = List.of();
+
+    @BeforeEach
+    public void setup() {
+        frames = new GameStateFrames();
+        game = new Game();
+        snake = new Snake();
+        snake.setUsername("player");
+        snake.setCoordinates(new int[][]{{5, 5}, {4, 5}, {3, 5}});
+        game.addSnake(snake);
+
+        GameFrame keyframe = next();
+        assertTrue(keyframe.isKeyframe());
+        assertEquals(1, keyframe.getSnakeCount());
+        assertEquals(3, keyframe.getSnake(0).getCells().size());
+    }
+
+    private GameFrame next() {
+        return frames.nextFrame(game, s -> effects);
+    }
+
+    @Test
+    public void nextFrame_keyframeEveryIntervalAndOnRequest() {
+        for (int i = 1; i < GameStateFrames.KEYFRAME_INTERVAL; i++) {
+            GameFrame frame = next();
+            assertFalse(frame.isKeyframe());
+            assertEquals(0, frame.getKeyframeNumber());
+            assertEquals(i, frame.getFrame());
+        }
+        assertTrue(next().isKeyframe());
+        assertEquals(GameStateFrames.KEYFRAME_INTERVAL, frames.getKeyframe());
+
+        frames.requestKeyframe();
+        assertTrue(next().isKeyframe());
+        assertFalse(next().isKeyframe());
+    }
+
+    @Test
+    public void nextFrame_moveSendsHeadAndTail() {
+        snake.moveHead(6, 5, false);
+
+        GameFrame frame = next();
+
+        assertEquals(1, frame.getSnakeCount());
+        GameFrame.SnakeSection section = frame.getSnake(0);
+        assertFalse(section.isWholeBody());
+        assertEquals(1, section.getCells().size());
+        assertEquals(Snake.packCell(6, 5), section.getCells().get(0));
+        assertEquals(1, section.getTail());
+    }
+
+    @Test
+    public void nextFrame_unchangedSnakeIsLeftOut() {
+        assertEquals(0, next().getSnakeCount());
+    }
+
+    @Test
+    public void nextFrame_growthAndTruncation() {
+        snake.moveHead(6, 5, true);
+        assertEquals(0, next().getSnake(0).getTail());
+
+        snake.truncate(2);
+        GameFrame.SnakeSection truncated = next().getSnake(0);
+        assertEquals(0, truncated.getCells().size());
+        assertEquals(2, truncated.getTail());
+    }
+
+    @Test
+    public void nextFrame_unrelatedBodySendsWholeBody() {
+        snake.setCoordinates(new int[][]{{20, 20}, {20, 21}});
+
+        GameFrame.SnakeSection section = next().getSnake(0);
+
+        assertTrue(section.isWholeBody());
+        assertEquals(Snake.packCell(20, 20), section.getCells().get(0));
+        assertEquals(Snake.packCell(20, 21), section.getCells().get(1));
+    }
+
+    @Test
+    public void nextFrame_removedSnakeGetsEmptyBody() {
+        game.removeSnake(snake);
+
+        GameFrame.SnakeSection section = next().getSnake(0);
+
+        assertTrue(section.isWholeBody());
+        assertEquals(0, section.getCells().size());
+    }
+
+    @Test
+    public void nextFrame_sendsOnlyAddedAndRemovedItems() {
+        Cookie kept = new Cookie(new int[]{1, 1}, "cookie");
+        Cookie eaten = new Cookie(new int[]{2, 1}, "cookie");
+        game.addItem(kept);
+        game.addItem(eaten);
+        assertEquals(2, next().getAddedItems(ItemKind.COOKIE).size());
+
+        game.removeItem(eaten);
+        game.addItem(new GoldenCookie(new int[]{7, 8}, "powerup"));
+        GameFrame frame = next();
+
+        assertEquals(0, frame.getAddedItems(ItemKind.COOKIE).size());
+        assertEquals(Snake.packCell(7, 8), frame.getAddedItems(ItemKind.GOLDEN_COOKIE).get(0));
+        assertEquals(1, frame.getRemovedItems(ItemKind.COOKIE).size());
+        assertEquals(Snake.packCell(2, 1), frame.getRemovedItems(ItemKind.COOKIE).get(0));
+    }
+
+    @Test
+    public void nextFrame_sendsEffectsOnlyWhenChanged() {
+        assertEquals(0, next().getEffectCount());
+
+        effects = List.of("Divider");
+        GameFrame changed = next();
+        assertEquals(1, changed.getEffectCount());
+        assertEquals("player", changed.getEffectUsername(0));
+        assertEquals(List.of("Divider"), changed.getEffectNames(0));
+
+        assertEquals(0, next().getEffectCount());
+    }
+}
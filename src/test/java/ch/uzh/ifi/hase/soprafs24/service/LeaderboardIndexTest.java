@@ -0,0 +1,111 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LeaderboardIndexTest {
+
+    private final LeaderboardIndex index = new LeaderboardIndex();
+
+    private static User user(long id, double level, double winRate) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername("user" + id);
+        user.setLevel(level);
+        user.setWinRate(winRate);
+        return user;
+    }
+
+    @Test
+    public void rank_ordersByLevelThenWinRateThenId() {
+        index.rebuild(List.of(user(1, 3.0, 0.5), user(2, 5.0, 0.1), user(3, 3.0, 0.9), user(4, 3.0, 0.5)));
+
+        assertEquals(1, index.rank(2L));
+        assertEquals(2, index.rank(3L));
+        assertEquals(3, index.rank(1L));
+        assertEquals(4, index.rank(4L));
+        assertEquals(-1, index.rank(99L));
+    }
+
+    @Test
+    public void update_movesUserAndRemoveDropsThem() {
+        index.rebuild(List.of(user(1, 3.0, 0.5), user(2, 5.0, 0.1)));
+
+        User promoted = user(1, 6.0, 0.5);
+        promoted.setWins(7);
+        index.update(promoted);
+
+        assertEquals(2, index.size());
+        assertEquals(1, index.rank(1L));
+        User top = index.top(1).get(0);
+        assertEquals(1L, top.getId());
+        assertEquals(7, top.getWins());
+        // the index hands out copies
+        assertNotSame(promoted, top);
+
+        index.remove(1L);
+        assertEquals(-1, index.rank(1L));
+        assertEquals(1, index.rank(2L));
+    }
+
+    @Test
+    public void topVersion_changesOnlyWhenTopListCanChange() {
+        List<User> users = new ArrayList<>();
+        for (long id = 1; id <= 20; id++) {
+            users.add(user(id, 30 - id, 0.5));
+        }
+        index.rebuild(users);
+        long version = index.getTopVersion();
+
+        // unchanged stats and changes far below the top list keep the version
+        index.update(user(1, 29, 0.5));
+        index.update(user(20, 10.5, 0.5));
+        index.remove(19L);
+        assertEquals(version, index.getTopVersion());
+
+        // a user climbing into the top list
+        index.update(user(18, 25.5, 0.5));
+        assertEquals(version + 1, index.getTopVersion());
+
+        // a user in the top list with new displayed stats
+        User killer = user(1, 29, 0.5);
+        killer.setKills(3);
+        index.update(killer);
+        assertEquals(version + 2, index.getTopVersion());
+    }
+
+    @Test
+    public void randomUpdates_matchSortedList() {
+        Random random = new Random(42);
+        List<User> users = new ArrayList<>();
+        for (long id = 0; id < 200; id++) {
+            users.add(user(id, random.nextInt(10), random.nextInt(4) / 4.0));
+        }
+        index.rebuild(users);
+        for (int i = 0; i < 500; i++) {
+            int position = random.nextInt(users.size());
+            User changed = user(users.get(position).getId(), random.nextInt(10), random.nextInt(4) / 4.0);
+            users.set(position, changed);
+            index.update(changed);
+        }
+
+        users.sort(Comparator.comparingDouble(User::getLevel).reversed()
+                .thenComparing(Comparator.comparingDouble(User::getWinRate).reversed())
+                .thenComparing(User::getId));
+        for (int i = 0; i < users.size(); i++) {
+            assertEquals(i + 1, index.rank(users.get(i).getId()));
+        }
+        List<User> top = index.top(10);
+        assertEquals(10, top.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(users.get(i).getId(), top.get(i).getId());
+        }
+    }
+}
@@ -326,6 +326,61 @@ public class LobbyServiceTest {
         verify(lobbyRepository, never()).deleteById(999L);
     }
     
+    @Test
+    public void getParticipantIds_servedFromRosterAfterFirstLoad() {
+        // Arrange
+        when(lobbyRepository.findById(1L)).thenReturn(Optional.of(testLobby));
+
+        // Act
+        List<Long> first = lobbyService.getParticipantIds(1L);
+        List<Long> second = lobbyService.getParticipantIds(1L);
+
+        // Assert
+        assertEquals(List.of(1L), first);
+        assertSame(first, second);
+        verify(lobbyRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    public void getParticipantIds_followsJoinLeaveAndDelete() {
+        // Arrange
+        when(lobbyRepository.findById(1L)).thenReturn(Optional.of(testLobby));
+        when(lobbyRepository.save(testLobby)).thenReturn(testLobby);
+        lobbyService.updateRoster(testLobby);
+
+        // Act & Assert: join
+        testLobby.addParticipantId(2L);
+        lobbyService.updateRoster(testLobby);
+        assertEquals(List.of(1L, 2L), lobbyService.getParticipantIds(1L));
+
+        // leave
+        testLobby.removeParticipantId(1L);
+        lobbyService.updateLobby(testLobby);
+        assertEquals(List.of(2L), lobbyService.getParticipantIds(1L));
+
+        // delete
+        lobbyService.deleteLobby(1L);
+        when(lobbyRepository.findById(1L)).thenReturn(Optional.empty());
+        clearInvocations(lobbyRepository);
+        assertTrue(lobbyService.getParticipantIds(1L).isEmpty());
+        verify(lobbyRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    public void getParticipantIds_missingLobby_notCached() {
+        // Arrange
+        testLobby.setId(42L);
+        when(lobbyRepository.findById(42L)).thenReturn(Optional.empty());
+
+        // Act: a miss is not remembered, a lobby created later is found
+        assertTrue(lobbyService.getParticipantIds(42L).isEmpty());
+        when(lobbyRepository.findById(42L)).thenReturn(Optional.of(testLobby));
+        assertEquals(testLobby.getParticipantIds(), lobbyService.getParticipantIds(42L));
+
+        // Assert
+        verify(lobbyRepository, times(2)).findById(42L);
+    }
+
     @Test
     public void getGameByLobby_returnsGame() {
         // Arrange
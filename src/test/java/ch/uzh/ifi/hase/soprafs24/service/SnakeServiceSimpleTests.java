@@ -1,5 +1,6 @@
 package ch.uzh.ifi.hase.soprafs24.service;
 
+import ch.uzh.ifi.hase.soprafs24.constant.Direction;
 import ch.uzh.ifi.hase.soprafs24.entity.Game;
 import ch.uzh.ifi.hase.soprafs24.entity.Item;
 import ch.uzh.ifi.hase.soprafs24.entity.Lobby;
@@ -31,6 +32,9 @@ public class SnakeServiceSimpleTests {
 
     @Mock
     private UserRepository userRepository;
+
+    @Mock
+    private StatsWriter statsWriter;
     
     @Mock
     private UserService userService;
@@ -67,14 +71,14 @@ public class SnakeServiceSimpleTests {
         // Setup test snake
         testSnake = new Snake();
         testSnake.setUsername("testUser");
-        testSnake.setDirection("RIGHT");
+        testSnake.setDirection(Direction.RIGHT);
         testSnake.setCoordinates(new int[][]{{5, 5}, {4, 5}, {3, 5}});
         testSnake.setGame(testGame);
-        testSnake.setEffects(new ArrayList<>());
+        testSnake.clearEffects();
         testSnake.setGrowCount(0);
 
         // Add snake to game
-        testGame.getSnakes().add(testSnake);
+        testGame.addSnake(testSnake);
         
         // Mock user repository
         testUser = new User();
@@ -108,7 +112,7 @@ public class SnakeServiceSimpleTests {
     @Test
     public void moveSnake_leftDirection_success() {
         // Setup
-        testSnake.setDirection("LEFT");
+        testSnake.setDirection(Direction.LEFT);
         
         // Call the method
         snakeService.moveSnake(testSnake);
@@ -123,7 +127,7 @@ public class SnakeServiceSimpleTests {
     @Test
     public void moveSnake_upDirection_success() {
         // Setup
-        testSnake.setDirection("UP");
+        testSnake.setDirection(Direction.UP);
         
         // Call the method
         snakeService.moveSnake(testSnake);
@@ -138,7 +142,7 @@ public class SnakeServiceSimpleTests {
     @Test
     public void moveSnake_downDirection_success() {
         // Setup
-        testSnake.setDirection("DOWN");
+        testSnake.setDirection(Direction.DOWN);
         
         // Call the method
         snakeService.moveSnake(testSnake);
@@ -153,7 +157,7 @@ public class SnakeServiceSimpleTests {
     @Test
     public void moveSnake_invalidDirection_throwsException() {
         // Setup
-        testSnake.setDirection("INVALID");
+        testSnake.setDirection(Direction.parse("INVALID"));
         
         // Check exception
         assertThrows(IllegalArgumentException.class, () -> {
@@ -167,7 +171,7 @@ public class SnakeServiceSimpleTests {
     public void moveSnake_eatsCookie_simpleTest() {
         // Add cookie in front of snake
         Cookie cookie = new Cookie(new int[]{6, 5}, "cookie");
-        testGame.getItems().add(cookie);
+        testGame.addItem(cookie);
         
         // Get initial size of items
         int initialItemsSize = testGame.getItems().size();
@@ -273,7 +277,7 @@ public class SnakeServiceSimpleTests {
         Snake otherSnake = new Snake();
         otherSnake.setUsername("otherUser");
         otherSnake.setCoordinates(new int[][]{{6, 5}, {6, 6}, {6, 7}});
-        testGame.getSnakes().add(otherSnake);
+        testGame.addSnake(otherSnake);
         
         // Position test snake to overlap with other snake
         testSnake.setCoordinates(new int[][]{{6, 5}, {5, 5}, {4, 5}});
@@ -297,7 +301,7 @@ public class SnakeServiceSimpleTests {
         Snake deadSnake = new Snake();
         deadSnake.setUsername("deadUser");
         deadSnake.setCoordinates(new int[][]{});
-        testGame.getSnakes().add(deadSnake);
+        testGame.addSnake(deadSnake);
         
         // Check collision
         boolean result = snakeService.checkCollision(testSnake, testGame);
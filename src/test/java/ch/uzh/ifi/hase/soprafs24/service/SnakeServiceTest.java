@@ -1,5 +1,6 @@
 package ch.uzh.ifi.hase.soprafs24.service;
 
+import ch.uzh.ifi.hase.soprafs24.constant.Direction;
 import ch.uzh.ifi.hase.soprafs24.entity.Game;
 import ch.uzh.ifi.hase.soprafs24.entity.Item;
 import ch.uzh.ifi.hase.soprafs24.entity.Powerups.Cookie;
@@ -35,12 +36,12 @@ public class SnakeServiceTest {
 
         // Setup test snake
         testSnake = new Snake();
-        testSnake.setDirection("RIGHT");
+        testSnake.setDirection(Direction.RIGHT);
         testSnake.setCoordinates(new int[][]{{5, 5}, {4, 5}, {3, 5}});
         testSnake.setGame(testGame);
 
         // Add snake to game
-        testGame.getSnakes().add(testSnake);
+        testGame.addSnake(testSnake);
     }
 
     @Test
@@ -62,7 +63,7 @@ public class SnakeServiceTest {
     @Test
     public void moveSnake_leftDirection_success() {
         // Setup
-        testSnake.setDirection("LEFT");
+        testSnake.setDirection(Direction.LEFT);
         
         // Call the method
         snakeService.moveSnake(testSnake);
@@ -77,7 +78,7 @@ public class SnakeServiceTest {
     @Test
     public void moveSnake_upDirection_success() {
         // Setup
-        testSnake.setDirection("UP");
+        testSnake.setDirection(Direction.UP);
         
         // Call the method
         snakeService.moveSnake(testSnake);
@@ -92,7 +93,7 @@ public class SnakeServiceTest {
     @Test
     public void moveSnake_downDirection_success() {
         // Setup
-        testSnake.setDirection("DOWN");
+        testSnake.setDirection(Direction.DOWN);
         
         // Call the method
         snakeService.moveSnake(testSnake);
@@ -107,7 +108,7 @@ public class SnakeServiceTest {
     @Test
     public void moveSnake_invalidDirection_throwsException() {
         // Setup
-        testSnake.setDirection("INVALID");
+        testSnake.setDirection(Direction.parse("INVALID"));
         
         // Check exception
         assertThrows(IllegalArgumentException.class, () -> {
@@ -120,7 +121,7 @@ public class SnakeServiceTest {
         // Setup - add a cookie to the game at the position where the snake will move
         Item cookie = new Cookie(new int[]{6, 5}, "cookie");
         // Position right in front of snake
-        testGame.getItems().add(cookie);
+        testGame.addItem(cookie);
 
         // Initial length
         int initialLength = testSnake.getCoordinates().length;
@@ -149,7 +150,7 @@ public class SnakeServiceTest {
 //    public void checkCollision_hitsWall_returnsTrue() {
 //        // Setup - position snake head next to wall
 //        testSnake.setCoordinates(new int[][]{{29, 5}, {28, 5}, {27, 5}});
-//        testSnake.setDirection("RIGHT");
+//        testSnake.setDirection(Direction.RIGHT);
 //
 //        // Move snake into wall
 //        snakeService.moveSnake(testSnake);
@@ -190,7 +191,7 @@ public class SnakeServiceTest {
     //     // Setup - add a "dead" snake with empty coordinates
     //     Snake deadSnake = new Snake();
     //     deadSnake.setCoordinates(new int[][]{});
-    //     testGame.getSnakes().add(deadSnake);
+    //     testGame.addSnake(deadSnake);
         
     //     // Normal snake shouldn't collide with dead snake
     //     assertFalse(snakeService.checkCollision(testSnake, testGame));
@@ -0,0 +1,120 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class StatsWriterTest {
+
+    private UserRepository userRepository;
+    private PlatformTransactionManager transactionManager;
+    private LeaderboardIndex leaderboardIndex;
+    private StatsWriter statsWriter;
+    private User alice;
+    private User bob;
+
+    @BeforeEach
+    public void setup() {
+        userRepository = mock(UserRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        leaderboardIndex = new LeaderboardIndex();
+        statsWriter = new StatsWriter(userRepository, transactionManager, leaderboardIndex);
+
+        alice = new User();
+        alice.setId(1L);
+        alice.setUsername("alice");
+        alice.setKills(2);
+        alice.setLengthPR(5);
+        bob = new User();
+        bob.setId(2L);
+        bob.setUsername("bob");
+        bob.setLengthPR(20);
+    }
+
+    private static User copyOf(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setUsername(user.getUsername());
+        copy.setKills(user.getKills());
+        copy.setLengthPR(user.getLengthPR());
+        return copy;
+    }
+
+    @AfterEach
+    public void tearDown() {
+        statsWriter.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void flush_coalescesEventsPerUserInOneTransaction() {
+        when(userRepository.findAllById(any())).thenReturn(List.of(alice, bob));
+
+        statsWriter.recordKill(1L);
+        statsWriter.recordKill(1L);
+        statsWriter.recordDeath(1L, 8);
+        statsWriter.recordDeath(1L, 6);
+        statsWriter.recordDeath(2L, 7);
+        statsWriter.flush();
+
+        ArgumentCaptor<Iterable<Long>> userIds = ArgumentCaptor.forClass(Iterable.class);
+        verify(userRepository, times(1)).findAllById(userIds.capture());
+        assertEquals(Set.of(1L, 2L), userIds.getValue());
+        assertEquals(4, alice.getKills());
+        assertEquals(8, alice.getLengthPR());
+        // bob's PR is higher than the new length
+        assertEquals(20, bob.getLengthPR());
+        verify(userRepository).saveAll(List.of(alice, bob));
+        verify(transactionManager, times(1)).commit(any());
+        // unabhaengig von einer Transaktion des Aufrufers
+        ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager).getTransaction(definition.capture());
+        assertEquals(TransactionDefinition.PROPAGATION_REQUIRES_NEW, definition.getValue().getPropagationBehavior());
+        assertEquals(0, statsWriter.getPendingEvents());
+        // the leaderboard shows the new stats
+        assertEquals(4, leaderboardIndex.top(1).get(0).getKills());
+    }
+
+    @Test
+    public void flush_failedTransaction_eventsAreWrittenByNextFlush() {
+        // jede Transaktion liest den Benutzer neu, die fehlgeschlagene wurde zurueckgerollt
+        User aliceFirstRead = copyOf(alice);
+        User aliceSecondRead = copyOf(alice);
+        when(userRepository.findAllById(any())).thenReturn(List.of(aliceFirstRead)).thenReturn(List.of(aliceSecondRead));
+        doThrow(new RuntimeException("Deadlock")).doReturn(List.of()).when(userRepository).saveAll(any());
+
+        statsWriter.recordKill(1L);
+        statsWriter.recordDeath(1L, 9);
+        assertThrows(RuntimeException.class, () -> statsWriter.flush());
+        // the batch is queued again, already coalesced
+        assertEquals(1, statsWriter.getPendingEvents());
+
+        statsWriter.recordKill(1L);
+        statsWriter.flush();
+
+        verify(userRepository, times(2)).saveAll(any());
+        assertEquals(4, aliceSecondRead.getKills());
+        assertEquals(9, aliceSecondRead.getLengthPR());
+        assertEquals(0, statsWriter.getPendingEvents());
+        assertEquals(4, leaderboardIndex.top(1).get(0).getKills());
+    }
+
+    @Test
+    public void flush_nothingRecorded_noTransaction() {
+        statsWriter.flush();
+
+        verifyNoInteractions(userRepository, transactionManager);
+    }
+}
@@ -9,6 +9,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.util.ArrayList;
@@ -24,6 +25,9 @@ public class UserServiceTest {
   @Mock
   private UserRepository userRepository;
 
+  @Spy
+  private LeaderboardIndex leaderboardIndex = new LeaderboardIndex();
+
   @InjectMocks
   private UserService userService;
 
@@ -57,6 +61,7 @@ public class UserServiceTest {
     assertEquals(testUser.getUsername(), createdUser.getUsername());
     assertNotNull(createdUser.getToken());
     assertEquals(UserStatus.ONLINE, createdUser.getStatus());
+    assertEquals(1, userService.getUserRankInLeaderboard(testUser.getId()));
   }
 
   @Test
@@ -112,20 +117,19 @@ public void getUserRankInLeaderboard_userExists_returnsCorrectRank() {
     user3.setLevel(10.0);
     user3.setWinRate(90);
     
-    List<User> sortedUsers = Arrays.asList(user3, user1, user2);
-    
-    // Mock repository behavior
-    Mockito.when(userRepository.findAllByOrderByLevelDescWinRateDesc()).thenReturn(sortedUsers);
+    // Startup loads all users into the leaderboard index
+    Mockito.when(userRepository.findAll()).thenReturn(Arrays.asList(user1, user2, user3));
+    userService.loadLeaderboard();
     
     // Test for user1 (should be rank 2)
     int rank = userService.getUserRankInLeaderboard(1L);
     assertEquals(2, rank);
+    Mockito.verify(userRepository, Mockito.times(1)).findAll();
 }
 
 @Test
 public void getUserRankInLeaderboard_userNotExists_throwsException() {
-    // Mock an empty leaderboard
-    Mockito.when(userRepository.findAllByOrderByLevelDescWinRateDesc()).thenReturn(new ArrayList<>());
+    // Empty leaderboard
     
     // Test for non-existent user
     assertThrows(ResponseStatusException.class, () -> {
@@ -136,34 +140,33 @@ public void getUserRankInLeaderboard_userNotExists_throwsException() {
 @Test
 public void getTopPlayersByLevel_limitLessThanAvailable_returnsLimitedUsers() {
     // Setup list of users
-    List<User> topUsers = new ArrayList<>();
+    List<User> users = new ArrayList<>();
     for (int i = 0; i < 20; i++) {
         User user = new User();
         user.setId((long) i);
         user.setLevel(20.0 - i);
-        topUsers.add(user);
+        users.add(user);
     }
-    
-    Mockito.when(userRepository.findTop10ByOrderByLevelDescWinRateDesc()).thenReturn(topUsers);
+    leaderboardIndex.rebuild(users);
     
     // Test with limit of 5
     List<User> result = userService.getTopPlayersByLevel(5);
     
     assertEquals(5, result.size());
     assertEquals(0L, result.get(0).getId()); // Highest level user
+    Mockito.verifyNoInteractions(userRepository);
 }
 
 @Test
 public void getTopPlayersByLevel_limitMoreThanAvailable_returnsAllUsers() {
     // Setup list of 3 users
-    List<User> topUsers = new ArrayList<>();
+    List<User> users = new ArrayList<>();
     for (int i = 0; i < 3; i++) {
         User user = new User();
         user.setId((long) i);
-        topUsers.add(user);
+        users.add(user);
     }
-    
-    Mockito.when(userRepository.findTop10ByOrderByLevelDescWinRateDesc()).thenReturn(topUsers);
+    leaderboardIndex.rebuild(users);
     
     // Test with limit of 5
     List<User> result = userService.getTopPlayersByLevel(5);
@@ -351,6 +354,7 @@ public void deleteUser_existingUser_success() {
     
     // Verify repository was called
     Mockito.verify(userRepository).deleteById(1L);
+    Mockito.verify(leaderboardIndex).remove(1L);
 }
 
 @Test